@@ -32,6 +32,14 @@ public abstract class AIModule
 	 * @see getNextMove
 	 */
 	public int chosenMove = -1;
+	/// Time alloted to getNextMove, in milliseconds.
+	/**
+	 * The GameController sets this before running the getNextMove function, so that AIs
+	 * can plan how to spend their time.  It is 0 if the time is not known.
+	 *
+	 * @see getNextMove
+	 */
+	public int timeLimit = 0;
 
 	/// Determines the best move to be played for the active player.
 	/**
@@ -46,4 +54,23 @@ public abstract class AIModule
 	 * @see chosenMove
 	 */
 	public abstract void getNextMove(final GameStateModule game);
+
+	/// Thinks ahead during the opponent's turn.
+	/**
+	 * When pondering is turned on, the GameController invokes this function right after
+	 * the AI's move has been made, with the opponent to move, and runs it until the
+	 * opponent has moved.  Then it sets the terminate flag, and the function should
+	 * return as quickly as it would from getNextMove.  Whatever the AI learns here, such
+	 * as the contents of a transposition table, is its to use in its next getNextMove.
+	 * chosenMove is not read.
+	 *
+	 * The default implementation returns right away.
+	 *
+	 * @param game Current state of the game, with the opponent to move.
+	 * @see getNextMove
+	 * @see terminate
+	 */
+	public void ponder(final GameStateModule game)
+	{
+	}
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+/// Optional interface for GameStates that can hand out their raw bitboards.
+/**
+ * Gives AIs the longs a bitboard state already holds, so that evaluation and search
+ * code can work on whole boards with shifts and masks rather than rebuilding them one
+ * getAt call at a time.
+ *
+ * Tile (x, y) is bit x * getBitsPerColumn() + y of every bitboard.  Bits that do not
+ * belong to a tile, such as the sentinel bits above the columns of GameState_Opt7x6,
+ * are always zero.  The bitboards are snapshots; they do not change when the state does.
+ *
+ * @see GameState_Opt7x6
+ * @see GameState_Opt8x8
+ * @see GameState_Bitboard64
+ */
+public interface BitboardAccess
+{
+	/// The distance in bits between the tiles (x, y) and (x + 1, y).
+    public int getBitsPerColumn();
+	/// Bitboard with every tile of the board set.
+    public long getBoardBitboard();
+	/// Bitboard with the bottom tile of every column set.
+    public long getBottomBitboard();
+	/// Bitboard of the coins of one player.
+	/**
+	 * @param player The player {1, 2}.
+	 * @return The tiles holding a coin of the player.
+	 */
+    public long getPlayerBitboard(final int player);
+	/// Bitboard of the coins of both players.
+    public long getOccupiedBitboard();
+	/// Bitboard of the tiles that the next coin in each column would land on.
+	/**
+	 * Full columns have no bit set.  This does not depend on whether the game is over.
+	 */
+    public long getPlayableBitboard();
+}
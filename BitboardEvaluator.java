@@ -0,0 +1,134 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/// Heuristic evaluation of a game by popcounts over its bitboards.
+/**
+ * Gives the same evaluation as IncrementalEvaluator, computed from scratch with a few
+ * dozen shifts instead of being kept up to date move by move.  For every direction, the
+ * coins of a player are ORed with themselves shifted back by one, two and three tiles
+ * along the direction, which leaves a bit set on the first tile of every line holding a
+ * coin of the player.  Masking that with the first tiles of the lines of each weight and
+ * counting the bits gives the total weight of the lines the player has touched.
+ *
+ * Evaluators are built once per board size and bit layout; use get rather than the
+ * constructor.
+ *
+ * @see LineTable
+ * @see BitboardAccess
+ */
+public final class BitboardEvaluator
+{
+	/// Evaluators already built, by width, height and bits per column.
+	private static final ConcurrentHashMap<Long, BitboardEvaluator> evaluators = new ConcurrentHashMap<Long, BitboardEvaluator>();
+
+	/// The size of the board and its bit layout.
+	public final int width;
+	public final int height;
+	public final int bitsPerColumn;
+	/// For each direction of LineTable.DIRECTIONS, the distance in bits between consecutive tiles of a line.
+	private final int[] shifts;
+	/// The distinct line weights.
+	private final int[] weights;
+	/// masks[d][w] has a bit set on the first tile of every line in direction d of weight weights[w].
+	private final long[][] masks;
+
+	/// Returns the evaluator for a board size and bit layout, building it on first use.
+	/**
+	 * @param width The width of the board.
+	 * @param height The height of the board.
+	 * @param bitsPerColumn The distance in bits between the tiles (x, y) and (x + 1, y).
+	 * @return The shared evaluator.
+	 * @throws IllegalArgumentException If the board does not fit in a long with that layout.
+	 */
+	public static BitboardEvaluator get(final int width, final int height, final int bitsPerColumn)
+	{
+		final Long key = Long.valueOf(((long) width << 40) | ((long) height << 20) | bitsPerColumn);
+		BitboardEvaluator evaluator = evaluators.get(key);
+		if(evaluator == null)
+		{
+			// Two threads may both build the evaluator; only one is kept.
+			final BitboardEvaluator built = new BitboardEvaluator(width, height, bitsPerColumn);
+			evaluator = evaluators.putIfAbsent(key, built);
+			if(evaluator == null)
+				evaluator = built;
+		}
+		return evaluator;
+	}
+
+	/// Returns the evaluator for the board and bit layout of a state.
+	public static BitboardEvaluator get(final GameStateModule state, final BitboardAccess bitboards)
+	{
+		return get(state.getWidth(), state.getHeight(), bitboards.getBitsPerColumn());
+	}
+
+	/// Builds the masks for a board size and bit layout.
+	private BitboardEvaluator(final int width, final int height, final int bitsPerColumn)
+	{
+		if(height > bitsPerColumn || (width - 1) * bitsPerColumn + height > 64)
+			throw new IllegalArgumentException("A " + width + "x" + height + " board with " + bitsPerColumn
+				+ " bits per column does not fit in a long.");
+		this.width = width;
+		this.height = height;
+		this.bitsPerColumn = bitsPerColumn;
+
+		final LineTable lines = LineTable.get(width, height);
+		shifts = new int[LineTable.DIRECTIONS.length];
+		for(int d = 0; d < shifts.length; d++)
+			shifts[d] = LineTable.DIRECTIONS[d][0] * bitsPerColumn + LineTable.DIRECTIONS[d][1];
+
+		int maxWeight = 0;
+		for(int line = 0; line < lines.count; line++)
+			maxWeight = Math.max(maxWeight, lines.weight[line]);
+		final int[] weightIndex = new int[maxWeight + 1];
+		int n = 0;
+		for(int w = 0; w <= maxWeight; w++)
+			for(int line = 0; line < lines.count; line++)
+				if(lines.weight[line] == w)
+				{
+					weightIndex[w] = n++;
+					break;
+				}
+		weights = new int[n];
+		masks = new long[shifts.length][n];
+		for(int line = 0; line < lines.count; line++)
+		{
+			final int w = weightIndex[lines.weight[line]];
+			weights[w] = lines.weight[line];
+			final int start = lines.start[line];
+			masks[lines.direction[line]][w] |= 1L << (start / height * bitsPerColumn + start % height);
+		}
+	}
+
+	/// Returns the evaluation of a position for a player.
+	/**
+	 * @param own The coins of the player.
+	 * @param other The coins of the opponent.
+	 * @return The total weight of the lines holding a coin of the player, minus that of the
+	 * lines holding a coin of the opponent.
+	 */
+	public int evaluate(final long own, final long other)
+	{
+		int score = 0;
+		for(int d = 0; d < shifts.length; d++)
+		{
+			final int s = shifts[d];
+			final long ownStarts = own | own >>> s | own >>> 2 * s | own >>> 3 * s;
+			final long otherStarts = other | other >>> s | other >>> 2 * s | other >>> 3 * s;
+			final long[] directionMasks = masks[d];
+			for(int w = 0; w < weights.length; w++)
+				score += weights[w] * (Long.bitCount(ownStarts & directionMasks[w]) - Long.bitCount(otherStarts & directionMasks[w]));
+		}
+		return score;
+	}
+
+	/// Returns the evaluation of a position for a player.
+	/**
+	 * @param bitboards The position.
+	 * @param player The player {1, 2}.
+	 * @return The total weight of the lines holding a coin of the player, minus that of the
+	 * lines holding a coin of the opponent.
+	 */
+	public int evaluate(final BitboardAccess bitboards, final int player)
+	{
+		return evaluate(bitboards.getPlayerBitboard(player), bitboards.getPlayerBitboard(3 - player));
+	}
+}
@@ -0,0 +1,38 @@
+/// Optional interface for GameStates that can find threats with bitboard operations.
+/**
+ * Answers "can I win right now" and "must I block" with a handful of shifts instead of
+ * trying makeMove, isGameOver and unMakeMove on every column.  AIs should check whether
+ * the GameStateModule they are given implements this interface before using it:
+ *
+ * \code
+ * if(state instanceof BitboardThreats)
+ *     wins = ((BitboardThreats) state).getWinningMoves(state.getActivePlayer());
+ * \endcode
+ *
+ * @see GameState_Opt7x6
+ * @see GameState_Opt8x8
+ * @see GameState_Bitboard64
+ */
+public interface BitboardThreats
+{
+	/// Returns the columns in which a player would win by dropping a coin right now.
+	/**
+	 * This ignores whose turn it is, so asking about the opponent of the active player
+	 * gives the columns that must be blocked.
+	 *
+	 * @param player The player {1, 2} to check.
+	 * @return A bitmask with bit x set if dropping a coin in column x wins the game for
+	 * the player, or 0 if the game is over.
+	 */
+    public int getWinningMoves(final int player);
+	/// Returns the empty tiles that would complete four in a row for a player.
+	/**
+	 * Unlike getWinningMoves, this includes tiles that are not playable yet because the
+	 * tiles below them are still empty.
+	 *
+	 * @param player The player {1, 2} to check.
+	 * @return A bitboard of the threat tiles, in the bit layout of the implementing class.
+	 * @see BitboardAccess
+	 */
+    public long getThreats(final int player);
+}
@@ -0,0 +1,389 @@
+/// Exact win/draw/loss solver for the end of a game.
+/**
+ * Searches a position to the end of the game on a bitboard of its own, far faster than
+ * a heuristic search can, so that AIs can switch to it once few enough tiles are left
+ * empty.  Scores follow the side to move, counting how early the game is decided:
+ *
+ * \code
+ * score > 0 : the side to move wins; winning with the n-th coin on the board scores
+ *             (width * height + 2 - n) / 2, so a larger score is a faster win
+ * score = 0 : the game is a draw with best play
+ * score < 0 : the opponent wins; losing to the n-th coin scores -(width * height + 2 - n) / 2
+ * \endcode
+ *
+ * The solver plays moves that create the most threats first and never plays a move
+ * that lets the opponent win right away, and keeps its results in a TranspositionTable
+ * of its own.  It handles every board that fits in a long with a sentinel bit above
+ * each column; see fits.  A solver belongs to one thread, and can be reused for any
+ * number of positions of its board size.
+ *
+ * @see TranspositionTable
+ */
+public final class EndgameSolver
+{
+	/// Board size.
+	private final int WIDTH;
+	private final int HEIGHT;
+	/// Bits per column, including the sentinel bit.
+	private final int H1;
+	/// Bottom tile of every column.
+	private final long BOTTOM;
+	/// Every tile of the board.
+	private final long BOARD;
+	/// The columns from the center outward.
+	private final int[] columnOrder;
+	/// Results of earlier searches, keyed on current + mask + BOTTOM.
+	private final TranspositionTable table;
+	/// Move ordering buffers, one per number of coins on the board.
+	private final long[][] orderedMoves;
+	private final int[][] orderScores;
+
+	/// Coins of the side to move.
+	private long current;
+	/// Coins of both players.
+	private long mask;
+	/// Number of coins on the board.
+	private int moves;
+
+	/// AI whose terminate flag stops the search, or null.
+	private AIModule owner;
+	/// System.nanoTime at which to stop the search, if hasDeadline.
+	private long deadline;
+	private boolean hasDeadline;
+	/// Whether the last solve was stopped by the terminate flag.
+	private boolean stopped;
+	/// Nodes searched by the last solve.
+	private long nodes;
+	/// Best move found by the last solve.
+	private int bestMove;
+
+	/// Whether a board fits in a long with one sentinel bit per column.
+	public static boolean fits(final int width, final int height)
+	{
+		return width > 0 && height > 0 && width * (height + 1) <= 64;
+	}
+
+	/// Constructor.
+	/**
+	 * @param width The width of the board.
+	 * @param height The height of the board.
+	 * @param tableBits Base 2 logarithm of the number of transposition table slots.
+	 * @throws IllegalArgumentException If the board does not fit, see fits.
+	 */
+	public EndgameSolver(final int width, final int height, final int tableBits)
+	{
+		if(!fits(width, height))
+			throw new IllegalArgumentException("A " + width + "x" + height + " board does not fit in a long with sentinel bits.");
+		WIDTH = width;
+		HEIGHT = height;
+		H1 = height + 1;
+		long bottom = 0;
+		for(int x = 0; x < width; x++)
+			bottom |= 1L << (x * H1);
+		BOTTOM = bottom;
+		BOARD = BOTTOM * ((1L << height) - 1);
+
+		columnOrder = new int[width];
+		int n = 0;
+		for(int distance = 0; n < width; distance++)
+			for(int x = 0; x < width; x++)
+				if(Math.abs(2 * x - (width - 1)) == distance)
+					columnOrder[n++] = x;
+
+		table = new TranspositionTable(tableBits);
+		orderedMoves = new long[width * height][width];
+		orderScores = new int[width * height][width];
+	}
+
+	/// Returns the width of the board.
+	public int getWidth()
+	{
+		return WIDTH;
+	}
+
+	/// Returns the height of the board.
+	public int getHeight()
+	{
+		return HEIGHT;
+	}
+
+	/// Solves a position.
+	/**
+	 * Entries of earlier solves are kept, so solving the positions of one game in turn
+	 * gets faster as the game goes on.
+	 *
+	 * @param state The position to solve, of this solver's board size, whose game is not over.
+	 * @param ai An AI whose terminate flag stops the search, or null to always finish.
+	 * @return The score of the position for the side to move, or 0 if the search was stopped.
+	 * @throws IllegalArgumentException If the state has a different board size.
+	 */
+	public int solve(final GameStateModule state, final AIModule ai)
+	{
+		return solve(state, ai, 0);
+	}
+
+	/// Solves a position within a time limit.
+	/**
+	 * The clock is read as often as the terminate flag, every 1024 positions.
+	 *
+	 * @param state The position to solve, of this solver's board size, whose game is not over.
+	 * @param ai An AI whose terminate flag stops the search, or null.
+	 * @param nanoseconds Time after which to stop the search, or 0 for none.
+	 * @return The score of the position for the side to move, or 0 if the search was stopped.
+	 * @throws IllegalArgumentException If the state has a different board size.
+	 * @see wasStopped
+	 */
+	public int solve(final GameStateModule state, final AIModule ai, final long nanoseconds)
+	{
+		hasDeadline = nanoseconds > 0;
+		deadline = System.nanoTime() + nanoseconds;
+		if(state.getWidth() != WIDTH || state.getHeight() != HEIGHT)
+			throw new IllegalArgumentException("Expected a " + WIDTH + "x" + HEIGHT + " board, got " + state.getWidth() + "x" + state.getHeight());
+
+		current = 0;
+		mask = 0;
+		final int player = state.getActivePlayer();
+		for(int x = 0; x < WIDTH; x++)
+			for(int y = 0; y < state.getHeightAt(x); y++)
+			{
+				final long tile = 1L << (x * H1 + y);
+				mask |= tile;
+				if(state.getAt(x, y) == player)
+					current |= tile;
+			}
+		moves = state.getCoins();
+		owner = ai;
+		stopped = false;
+		nodes = 0;
+		bestMove = -1;
+
+		// A win right away needs no search.
+		final long possible = possible();
+		final long wins = possible & winningTiles(current);
+		if(wins != 0)
+		{
+			bestMove = Long.numberOfTrailingZeros(wins) / H1;
+			return (WIDTH * HEIGHT + 1 - moves) / 2;
+		}
+
+		// Every move but those returned by nonLosingMoves lets the opponent win with its
+		// next coin.  If that is all there is, any of them will do.
+		final long safe = nonLosingMoves();
+		if(safe == 0)
+		{
+			bestMove = Long.numberOfTrailingZeros(possible) / H1;
+			return -(WIDTH * HEIGHT - moves) / 2;
+		}
+
+		int alpha = -(WIDTH * HEIGHT) / 2 - 1;
+		final int beta = (WIDTH * HEIGHT) / 2 + 1;
+		for(int i = 0; i < WIDTH; i++)
+		{
+			final int x = columnOrder[i];
+			final long move = safe & columnMask(x);
+			if(move == 0)
+				continue;
+
+			final long c = current;
+			final long m = mask;
+			play(move);
+			final int score = -negamax(-beta, -alpha);
+			current = c;
+			mask = m;
+			moves--;
+			if(stopped)
+				return 0;
+
+			if(bestMove == -1 || score > alpha)
+			{
+				alpha = score;
+				bestMove = x;
+			}
+		}
+		return alpha;
+	}
+
+	/// The best move found by the last solve, or -1 if it was stopped before finding one.
+	public int getBestMove()
+	{
+		return bestMove;
+	}
+
+	/// Whether the last solve was stopped by the terminate flag or its time limit, which makes its results meaningless.
+	public boolean wasStopped()
+	{
+		return stopped;
+	}
+
+	/// The number of positions searched by the last solve.
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	/// Empties the transposition table, for a new game.
+	public void clear()
+	{
+		table.clear();
+	}
+
+	/// Returns the score of the position for the side to move, within [alpha, beta].
+	private int negamax(int alpha, int beta)
+	{
+		nodes++;
+		if((nodes & 1023) == 0)
+			if((owner != null && owner.terminate) || (hasDeadline && System.nanoTime() - deadline >= 0))
+				stopped = true;
+		if(stopped)
+			return 0;
+
+		final long next = nonLosingMoves();
+		if(next == 0)
+			return -(WIDTH * HEIGHT - moves) / 2;
+		if(moves >= WIDTH * HEIGHT - 2)
+			return 0;
+
+		// The opponent cannot win before its next coin, nor this side before the one after.
+		final int min = -(WIDTH * HEIGHT - 2 - moves) / 2;
+		if(alpha < min)
+		{
+			alpha = min;
+			if(alpha >= beta)
+				return alpha;
+		}
+		int max = (WIDTH * HEIGHT - 1 - moves) / 2;
+
+		final long key = current + mask + BOTTOM;
+		final long entry = table.probe(key);
+		final int bound = TranspositionTable.getBound(entry);
+		int tableMove = -1;
+		if(bound != 0)
+		{
+			final int score = TranspositionTable.getScore(entry);
+			if(bound == TranspositionTable.EXACT)
+				return score;
+			if(bound == TranspositionTable.UPPER)
+				max = Math.min(max, score);
+			else
+			{
+				alpha = Math.max(alpha, score);
+				if(alpha >= beta)
+					return alpha;
+			}
+			tableMove = TranspositionTable.getMove(entry);
+		}
+		if(beta > max)
+		{
+			beta = max;
+			if(alpha >= beta)
+				return beta;
+		}
+
+		// Order the moves by the number of threats they leave, center first among equals,
+		// with the move of the table entry in front.
+		final long[] ordered = orderedMoves[moves];
+		final int[] scores = orderScores[moves];
+		int count = 0;
+		for(int i = 0; i < WIDTH; i++)
+		{
+			final int x = columnOrder[i];
+			final long move = next & columnMask(x);
+			if(move == 0)
+				continue;
+			final int score = x == tableMove ? Integer.MAX_VALUE : Long.bitCount(winningTiles(current | move));
+			int j = count++;
+			while(j > 0 && scores[j - 1] < score)
+			{
+				ordered[j] = ordered[j - 1];
+				scores[j] = scores[j - 1];
+				j--;
+			}
+			ordered[j] = move;
+			scores[j] = score;
+		}
+
+		final int alphaIn = alpha;
+		int best = -1;
+		for(int i = 0; i < count; i++)
+		{
+			final long c = current;
+			final long m = mask;
+			play(ordered[i]);
+			final int score = -negamax(-beta, -alpha);
+			current = c;
+			mask = m;
+			moves--;
+			if(stopped)
+				return 0;
+
+			if(score >= beta)
+			{
+				table.store(key, WIDTH * HEIGHT - moves, TranspositionTable.LOWER, score, Long.numberOfTrailingZeros(ordered[i]) / H1);
+				return score;
+			}
+			if(score > alpha)
+			{
+				alpha = score;
+				best = Long.numberOfTrailingZeros(ordered[i]) / H1;
+			}
+		}
+		table.store(key, WIDTH * HEIGHT - moves, alpha > alphaIn ? TranspositionTable.EXACT : TranspositionTable.UPPER, alpha, best);
+		return alpha;
+	}
+
+	/// Drops a coin of the side to move on a tile, and hands the turn over.
+	private void play(final long move)
+	{
+		current ^= mask;
+		mask |= move;
+		moves++;
+	}
+
+	/// The tiles the next coin in each column would land on.
+	private long possible()
+	{
+		return (mask + BOTTOM) & BOARD;
+	}
+
+	/// The moves of the side to move that do not let the opponent win with its next coin.
+	private long nonLosingMoves()
+	{
+		long possible = possible();
+		final long opponentWins = winningTiles(current ^ mask);
+		final long forced = possible & opponentWins;
+		if(forced != 0)
+		{
+			// More than one threat to block means the game is lost.
+			if((forced & (forced - 1)) != 0)
+				return 0;
+			possible = forced;
+		}
+		// Never play right below a tile the opponent wins on.
+		return possible & ~(opponentWins >>> 1);
+	}
+
+	/// The empty tiles that would complete four in a row for the given coins.
+	private long winningTiles(final long p)
+	{
+		// Vertical.
+		long r = (p << 1) & (p << 2) & (p << 3);
+
+		// Horizontal and both diagonals.
+		for(int s = H1 - 1; s <= H1 + 1; s++)
+		{
+			long p2 = (p << s) & (p << 2 * s);
+			r |= p2 & (p << 3 * s);
+			r |= p2 & (p >>> s);
+			p2 = (p >>> s) & (p >>> 2 * s);
+			r |= p2 & (p >>> 3 * s);
+			r |= p2 & (p << s);
+		}
+		return r & (BOARD ^ mask);
+	}
+
+	/// Every tile of column x.
+	private long columnMask(final int x)
+	{
+		return ((1L << HEIGHT) - 1) << (x * H1);
+	}
+}
@@ -19,6 +19,13 @@ public final class GameController
 	private final AIModule[] players;
 	/// Time alloted to any AI per turn.
 	private final int AI_time;
+	/// Whether AIs keep thinking during their opponent's turn.
+	private final boolean ponder;
+	/// Thread running the ponder method of the AI that moved last, or null.
+	private Thread ponderThread;
+	/// The AI that ponderThread runs, and its label.
+	private AIModule ponderingAI;
+	private String ponderingName;
 
 	/// Primary Constructor.
 	/**
@@ -31,6 +38,26 @@ public final class GameController
 	 * @param AI_time Maximum amount of time alotted per AI move.
 	 */
 	public GameController(final GameStateModule game, final IOModule io, final AIModule[] players, final int AI_time)
+	{
+		this(game, io, players, AI_time, false);
+	}
+
+	/// Constructor that can let the AIs ponder.
+	/**
+	 * Constructs a new GameController that pulls together the various pieces of the
+	 * program.  With pondering, an AI that has just moved keeps running its ponder
+	 * method in the background until its opponent has moved, human or AI.  Both AIs
+	 * then think at the same time, so this is only fair with a processor for each.
+	 *
+	 * @param game The game to arbitrate.
+	 * @param io An IO module to use for graphics output and human input.
+	 * @param players An array of two AIModules that will be pitted against each other.
+	 * @param AI_time Maximum amount of time alotted per AI move.
+	 * @param ponder Whether the AIs may ponder during their opponent's turn.
+	 * @see AIModule.ponder
+	 */
+	public GameController(final GameStateModule game, final IOModule io, final AIModule[] players, final int AI_time,
+		final boolean ponder)
 	{
 		assert players.length == 2 : "Should only have two players.";
 
@@ -38,6 +65,7 @@ public final class GameController
 		this.io = io;
 		this.players = players;
 		this.AI_time = AI_time;
+		this.ponder = ponder;
 	}
 
 	/// Start the gameplay.
@@ -62,6 +90,11 @@ public final class GameController
 					callAI(player, "Player " + (i + 1));
 					
 				}
+				// The opponent has moved, so it can stop pondering.
+				stopPondering();
+				// An AI playing both sides has no opponent's turn to ponder in
+				if(ponder && player != null && player != players[1 - i] && !game.isGameOver())
+					startPondering(player, "Player " + (i + 1));
 
 				// Update graphics
 				io.drawBoard(game); // Uncomment to draw the board.
@@ -104,6 +137,7 @@ public final class GameController
 		// String str = s.nextLine();
 		
 		
+		ai.timeLimit = AI_time;
 		ai.terminate = false;
 		// Run the ai in another thread
 		final Thread t = new Thread()
@@ -142,6 +176,57 @@ public final class GameController
 		tryMakeMove(move);
 	}
 
+	/// Starts an AI pondering the current state in the background.
+	/**
+	 * @param ai The AIModule that has just moved.
+	 * @param AIName Label given to the AI.
+	 * @see stopPondering
+	 */
+	private void startPondering(final AIModule ai, final String AIName)
+	{
+		// The AI gets a copy of its own, like in callAI
+		final GameStateModule duplicate = game.copy();
+
+		ai.timeLimit = AI_time;
+		ai.terminate = false;
+		ponderingAI = ai;
+		ponderingName = AIName;
+		ponderThread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				ai.ponder(duplicate);
+			}
+		};
+		ponderThread.start();
+	}
+
+	/// Stops the AI started by startPondering, if any, and waits for it.
+	/**
+	 * The AI is given the same margin to stop as at the end of a turn.
+	 */
+	private void stopPondering()
+	{
+		if(ponderThread == null)
+			return;
+		ponderingAI.terminate = true;
+		try
+		{
+			ponderThread.join(100);
+			if(ponderThread.isAlive())
+				throw new RuntimeException(ponderingName + " did not stop pondering when told to do so.");
+		}
+		catch(Exception e)
+		{
+			e.printStackTrace();
+			System.exit(-1);
+		}
+		ponderThread = null;
+		ponderingAI = null;
+		ponderingName = null;
+	}
+
 	/// Attempts to make the given move, defaulting to an arbitrary move otherwise.
 	/**
 	 * Given a move, attempts to play that move.  If the move is illegal, the GameController
@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/// Writes GameState_OptWxH classes specialized for a single board size.
+/**
+ * Main looks for a class named GameState_OptWxH before falling back on the generic
+ * representations.  This program writes such classes for any board that fits in 128
+ * bits, by rewriting the source of GameState_Bitboard64 (or GameState_Bitboard128 for
+ * boards that do not fit in a long) so that the board geometry assigned in its
+ * constructor becomes a set of static final constants.  The JIT can then fold the
+ * shifts and masks of the generated class just like those of GameState_Opt7x6.
+ *
+ * Command line: java GameStateGenerator [-src dir] [-out dir] [-force] [WxH ...]
+ *
+ * Without any sizes, every board of at least 4x4 that fits in 128 bits is written.
+ * Sizes that already have a hand-written class in the source directory are skipped
+ * unless -force is given.  The output is meant to be compiled along with the rest of
+ * the program, for example:
+ *
+ * \code
+ * java GameStateGenerator -out generated
+ * javac *.java generated/*.java
+ * \endcode
+ *
+ * @see GameState_Bitboard64
+ * @see GameState_Bitboard128
+ */
+public final class GameStateGenerator
+{
+	/// Field declarations that the constructor may turn into constants.
+	private static final Pattern FIELD = Pattern.compile("(?m)^\\tprivate final (int|long) ([A-Z][A-Z0-9_]*);$");
+	/// Geometry assignments in the constructor body.
+	private static final Pattern ASSIGNMENT = Pattern.compile("(?m)^\\t\\t([A-Z][A-Z0-9_]*) = (.+);\\n");
+
+	private GameStateGenerator()
+	{
+	}
+
+	/// Program startup function.
+	public static void main(String[] args) throws IOException
+	{
+		File src = new File(".");
+		File out = new File(".");
+		boolean force = false;
+		final List<int[]> sizes = new ArrayList<int[]>();
+
+		for(int i = 0; i < args.length; i++)
+		{
+			if(args[i].equalsIgnoreCase("-src"))
+				src = new File(args[++i]);
+			else if(args[i].equalsIgnoreCase("-out"))
+				out = new File(args[++i]);
+			else if(args[i].equalsIgnoreCase("-force"))
+				force = true;
+			else
+			{
+				final String[] size = args[i].toLowerCase().split("x");
+				if(size.length != 2)
+					throw new IllegalArgumentException("Expected a size such as 9x7, got " + args[i]);
+				sizes.add(new int[] {Integer.parseInt(size[0]), Integer.parseInt(size[1])});
+			}
+		}
+
+		if(sizes.isEmpty())
+			for(int w = 4; GameState_Bitboard128.fits(w, 4); w++)
+				for(int h = 4; GameState_Bitboard128.fits(w, h); h++)
+					sizes.add(new int[] {w, h});
+
+		final String template64 = read(new File(src, "GameState_Bitboard64.java"));
+		final String template128 = read(new File(src, "GameState_Bitboard128.java"));
+		out.mkdirs();
+
+		for(final int[] size : sizes)
+		{
+			final int w = size[0];
+			final int h = size[1];
+			final String name = className(w, h);
+			if(!force && new File(src, name + ".java").exists())
+			{
+				System.out.println("Skipping " + name + "; a hand-written version exists");
+				continue;
+			}
+
+			final String source;
+			if(GameState_Bitboard64.fits(w, h))
+				source = generate(template64, "GameState_Bitboard64", w, h);
+			else if(GameState_Bitboard128.fits(w, h))
+				source = generate(template128, "GameState_Bitboard128", w, h);
+			else
+				throw new IllegalArgumentException("A " + w + "x" + h + " board does not fit in 128 bits.");
+
+			Files.write(new File(out, name + ".java").toPath(), source.getBytes(StandardCharsets.UTF_8));
+			System.out.println("Wrote " + name);
+		}
+	}
+
+	/// The name that Main looks up for a board of the given size.
+	public static String className(final int w, final int h)
+	{
+		return "GameState_Opt" + w + "x" + h;
+	}
+
+	/// Specializes the source of a generic bitboard class for a single board size.
+	/**
+	 * The template must assign its geometry in the constructor with lines of the form
+	 * NAME = expression;, where NAME is an upper-case field declared as
+	 * private final int or long and the expression only uses the parameters w and h,
+	 * the fields assigned before it and static methods.  Each such field becomes a
+	 * static final constant initialized with the expression, so the fields must be
+	 * declared in an order in which they can be initialized.
+	 *
+	 * @param template The source of the generic class.
+	 * @param templateName The name of the generic class.
+	 * @param w The width of the board.
+	 * @param h The height of the board.
+	 * @return The source of the specialized class.
+	 * @throws IllegalArgumentException If the template does not have the expected shape.
+	 */
+	public static String generate(final String template, final String templateName, final int w, final int h)
+	{
+		final String name = className(w, h);
+
+		// Pull the constructor body out of the template.
+		final Matcher ctor = Pattern.compile("(?s)\\tpublic " + templateName + "\\(final int w, final int h\\)\\n\\t\\{\\n(.*?)\\n\\t\\}\\n").matcher(template);
+		if(!ctor.find())
+			throw new IllegalArgumentException(templateName + " does not have a (w, h) constructor");
+
+		// Collect the geometry assignments and drop them, along with the size check and
+		// the comment introducing them, from the constructor.
+		final Map<String, String> geometry = new LinkedHashMap<String, String>();
+		final Matcher assignment = ASSIGNMENT.matcher(ctor.group(1) + "\n");
+		final StringBuffer body = new StringBuffer();
+		while(assignment.find())
+		{
+			geometry.put(assignment.group(1), substitute(assignment.group(2), w, h));
+			assignment.appendReplacement(body, "");
+		}
+		assignment.appendTail(body);
+		final String newBody = body.toString()
+			.replaceAll("(?m)^\\t\\tif\\(!fits\\(w, h\\)\\)\\n\\t\\t\\tthrow .*\\n", "")
+			.replaceAll("(?m)^\\t\\t// Board geometry\\..*\\n", "")
+			.replaceAll("^\\n+", "")
+			.replaceAll("\\n+$", "");
+		// The constructor documentation no longer has parameters to describe.
+		final String before = template.substring(0, ctor.start());
+		final int docStart = before.lastIndexOf("\t/**");
+		final String doc = before.substring(docStart)
+			.replaceAll("(?m)^\\t \\* @param [wh] .*\\n", "")
+			.replaceAll("(?m)^\\t \\* @throws IllegalArgumentException .*\\n", "")
+			.replaceAll("(?m)^\\t \\* @see fits\\n", "")
+			.replace("\t *\n\t */", "\t * Width and Height are preset.\n\t */");
+		String source = before.substring(0, docStart) + doc
+			+ "\tpublic " + name + "()\n\t{\n" + newBody + "\n\t}\n"
+			+ template.substring(ctor.end());
+
+		// Turn the geometry fields into constants.
+		final Matcher field = FIELD.matcher(source);
+		final StringBuffer fields = new StringBuffer();
+		while(field.find())
+		{
+			final String value = geometry.remove(field.group(2));
+			final String replacement = value == null ? field.group()
+				: "\tprivate final static " + field.group(1) + " " + field.group(2) + " = " + value + ";";
+			field.appendReplacement(fields, Matcher.quoteReplacement(replacement));
+		}
+		field.appendTail(fields);
+		if(!geometry.isEmpty())
+			throw new IllegalArgumentException(templateName + " assigns undeclared geometry " + geometry.keySet());
+		source = fields.toString();
+
+		// Fix up the class documentation and the name.
+		source = source
+			.replace("new " + templateName + "(WIDTH, HEIGHT)", "new " + name + "()")
+			.replace(templateName, name);
+		final int classStart = source.indexOf("/// ");
+		final int classEnd = source.indexOf("public final class " + name);
+		if(classStart < 0 || classEnd < 0)
+			throw new IllegalArgumentException(templateName + " does not have the expected class declaration");
+		source = source.substring(0, classStart)
+			+ "/// Representation of a game of Connect Four optimized for the " + w + "x" + h + " board size.\n"
+			+ "/**\n"
+			+ " * Generated by GameStateGenerator from " + templateName + ", with the board\n"
+			+ " * geometry folded into constants.  Do not edit; regenerate instead.\n"
+			+ " *\n"
+			+ " * @see GameStateModule\n"
+			+ " * @see " + templateName + "\n"
+			+ " */\n"
+			+ source.substring(classEnd);
+		return source;
+	}
+
+	/// Replaces the constructor parameters in an expression with the board size.
+	private static String substitute(final String expression, final int w, final int h)
+	{
+		return expression.replaceAll("\\bw\\b", Integer.toString(w)).replaceAll("\\bh\\b", Integer.toString(h));
+	}
+
+	/// Reads a source file.
+	private static String read(final File file) throws IOException
+	{
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
@@ -19,12 +19,50 @@ public interface GameStateModule
 {
 	/// Creates a deep copy of the GameState.
     public GameStateModule copy();
+	/// Overwrites another GameState with a deep copy of this one.
+	/**
+	 * This is the allocation-free counterpart of copy, meant for loops that need a
+	 * scratch copy of the game over and over.
+	 *
+	 * Implementing it is optional.  States that do not implement it throw an
+	 * UnsupportedOperationException, and GameStatePool falls back on copy for them.
+	 *
+	 * @param target A state of the same class and board size, typically one that was
+	 * made by an earlier call to copy.
+	 * @throws java.lang.RuntimeException If the target has a different class or size.
+	 * @throws java.lang.UnsupportedOperationException If the state does not implement it.
+	 * @see GameStatePool
+	 */
+    public default void copyInto(final GameStateModule target) throws RuntimeException
+    {
+        throw new UnsupportedOperationException(getClass().getName() + " does not implement copyInto");
+    }
 	/// Verifies that a move in column x is legal.
 	/**
 	 * @param x Column to check.
 	 * @return Whether or not the move is legal.
 	 */
     public boolean canMakeMove(final int x);
+	/// Returns every legal column at once.
+	/**
+	 * Bit x of the result is set if and only if canMakeMove(x) would return true, so
+	 * the result is 0 once the game is over.  Only boards of up to 32 columns can be
+	 * represented this way.  Implementing it is optional; the default asks
+	 * canMakeMove about every column.
+	 *
+	 * @return A bitmask of the legal columns.
+	 * @throws java.lang.RuntimeException If the board is wider than 32 columns.
+	 */
+    public default int getLegalMoves()
+    {
+        if(getWidth() > 32)
+            throw new RuntimeException("Cannot represent the moves of a board wider than 32 columns.");
+        int legal = 0;
+        for(int x = 0; x < getWidth(); x++)
+            if(canMakeMove(x))
+                legal |= 1 << x;
+        return legal;
+    }
 	/// Drops a coin into column x for the active player.
 	/**
 	 * @param x Column to drop the coin.
@@ -63,6 +101,23 @@ public interface GameStateModule
     public int getHeight();
 	/// The number of coins that have been dropped so far.
     public int getCoins();
+	/// A 64-bit key identifying the current position.
+	/**
+	 * Two states of the same class and board size that hold the same coins return the
+	 * same key, no matter in which order the moves were made.  The key is cheap to
+	 * read, so it can be used to index transposition tables and other caches.  Some
+	 * implementations derive an exact encoding of the position, others a hash, so
+	 * callers that need certainty should be prepared for collisions.
+	 *
+	 * Implementing it is optional; the default hashes every coin with
+	 * PositionKeys.hashTiles, which is correct but reads the whole board.
+	 *
+	 * @return The key of the current position.
+	 */
+    public default long getPositionKey()
+    {
+        return PositionKeys.hashTiles(this);
+    }
 	/// The start point of the winning four tiles.
 	/**
 	 * Note: This is for graphical purposes only. Do not call this function.
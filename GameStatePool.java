@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+
+/// Per-thread pool of reusable GameStates.
+/**
+ * Hands out scratch copies of a game without allocating once the pool has warmed up.
+ * A state taken with acquire holds a deep copy of the source and should be handed back
+ * with release once the caller is done with it:
+ *
+ * \code
+ * final GameStateModule scratch = GameStatePool.acquire(state);
+ * ... play moves on scratch ...
+ * GameStatePool.release(scratch);
+ * \endcode
+ *
+ * Every thread has its own pool, so no locking is needed, but a state must be released
+ * on the thread that acquired it.  States that do not implement copyInto are copied
+ * every time.
+ *
+ * @see GameStateModule.copyInto
+ */
+public final class GameStatePool
+{
+	/// Maximum number of idle states kept per thread.
+	private static final int CAPACITY = 64;
+
+	/// Idle states, one list per thread.
+	private static final ThreadLocal<ArrayList<GameStateModule>> idle = new ThreadLocal<ArrayList<GameStateModule>>()
+	{
+		@Override
+		protected ArrayList<GameStateModule> initialValue()
+		{
+			return new ArrayList<GameStateModule>();
+		}
+	};
+
+	private GameStatePool()
+	{
+	}
+
+	/// Returns a deep copy of the given state, reusing an idle state when possible.
+	/**
+	 * @param source The state to copy.
+	 * @return A state of the same class and size as source holding a copy of it.
+	 */
+	public static GameStateModule acquire(final GameStateModule source)
+	{
+		final ArrayList<GameStateModule> states = idle.get();
+		for(int i = states.size() - 1; i >= 0; i--)
+		{
+			final GameStateModule state = states.get(i);
+			if(state.getClass() == source.getClass() && state.getWidth() == source.getWidth()
+			   && state.getHeight() == source.getHeight())
+			{
+				// Move the last idle state into the hole to avoid shifting the list.
+				states.set(i, states.get(states.size() - 1));
+				states.remove(states.size() - 1);
+				try
+				{
+					source.copyInto(state);
+				}
+				catch(UnsupportedOperationException e)
+				{
+					// The state cannot be overwritten, so it is dropped.
+					return source.copy();
+				}
+				return state;
+			}
+		}
+		return source.copy();
+	}
+
+	/// Returns a state to the pool of the calling thread.
+	/**
+	 * The state must not be used by the caller afterwards.  If the pool is full, the
+	 * state is simply dropped.
+	 *
+	 * @param state A state obtained from acquire.
+	 */
+	public static void release(final GameStateModule state)
+	{
+		final ArrayList<GameStateModule> states = idle.get();
+		if(states.size() < CAPACITY)
+			states.add(state);
+	}
+}
@@ -0,0 +1,436 @@
+import java.awt.Point;
+
+/// Representation of a game of Connect Four for any board that fits in two longs.
+/**
+ * This class uses the same column layout as GameState_Bitboard64, with height + 1 bits
+ * per column, but spreads each player's bitboard over a pair of longs so that any
+ * board with width * (height + 1) <= 128 can be represented.  Bit i of the board is
+ * bit i of the low word for i < 64 and bit i - 64 of the high word otherwise; a
+ * column may straddle the two words.  For a 10x8 board the bits are represented in
+ * the following manner:
+ *
+ * .......................................... -= TOP		\n
+ * 7.16.25.34.43.52.61.70.79.88				\n
+ * ...										\n
+ * 0..9.18.27.36.45.54.63.72.81 -= BOTTOM	\n
+ *
+ * Victory detection uses the same shifts as GameState_Bitboard64, carrying the bits
+ * that cross the word boundary from the high word into the low word.
+ *
+ * This class is also the template from which GameStateGenerator writes the
+ * size-specific GameState_OptWxH classes for boards that do not fit in a long.
+ *
+ * @see GameStateModule
+ * @see GameState_Bitboard64
+ * @see GameStateGenerator
+ */
+public final class GameState_Bitboard128 implements GameStateModule
+{
+	private final int WIDTH;
+	private final int HEIGHT;
+	/// Amount to shift the bitboard to move over one column.
+	private final int H1;
+	/// Amount to shift the bitboard to move over one column and up one row.
+	private final int H2;
+	private final int SIZE;
+	/// Low words (bits 0 to 63) of the player bitboards.
+	private final long colorLo[] = new long[2];
+	/// High words (bits 64 to 127) of the player bitboards.
+	private final long colorHi[] = new long[2];
+	/// History of plays.
+	private final int moves[];
+	/// Number of moves executed.
+	private int nplies = 0;
+	private int coins = 0;
+	/// Holds the bit index of lowest free tile in a given column.
+	private final byte height[];
+	private boolean gameOver = false;
+	private int Winner;
+	private boolean pointsComputed = false;
+	private Point startPt;
+	private Point endPt;
+
+	/// Primary Constructor.
+	/**
+	 * Creates a new game board of the specified width and height.  The starting player
+	 * is player 1 and the board is initially empty and with no undo/redo history.
+	 *
+	 * @param w The width of the board.
+	 * @param h The height of the board.
+	 * @throws IllegalArgumentException If the board does not fit in two longs.
+	 * @see fits
+	 */
+	public GameState_Bitboard128(final int w, final int h)
+	{
+		if(!fits(w, h))
+			throw new IllegalArgumentException("A " + w + "x" + h + " board does not fit in 128 bits.");
+		// Board geometry.  GameStateGenerator turns these assignments into constants.
+		WIDTH = w;
+		HEIGHT = h;
+		H1 = h + 1;
+		H2 = h + 2;
+		SIZE = w * h;
+
+		moves = new int[SIZE];
+		height = new byte[WIDTH];
+		for(int i = 0; i < WIDTH; i++)
+			height[i] = (byte) (H1 * i);
+	}
+
+	/// Returns whether a board of the given size can be represented by this class.
+	/**
+	 * @param w The width of the board.
+	 * @param h The height of the board.
+	 * @return Whether each column plus its sentinel bit fits in 128 bits.
+	 */
+	public static boolean fits(final int w, final int h)
+	{
+		return w > 0 && h > 0 && w * (h + 1) <= 128;
+	}
+
+	/// Low word of the 128-bit value (hi, lo) shifted right by n bits.
+	private static long shiftLo(final long lo, final long hi, final int n)
+	{
+		if(n >= 128)
+			return 0L;
+		if(n >= 64)
+			return hi >>> (n - 64);
+		return (lo >>> n) | (hi << (64 - n));
+	}
+
+	/// High word of the 128-bit value (hi, lo) shifted right by n bits.
+	private static long shiftHi(final long hi, final int n)
+	{
+		return n >= 64 ? 0L : hi >>> n;
+	}
+
+	/// Creates a deep copy of this.
+	public GameState_Bitboard128 copy()
+	{
+		final GameState_Bitboard128 game = new GameState_Bitboard128(WIDTH, HEIGHT);
+		copyInto(game);
+		return game;
+	}
+
+	/// Overwrites another state with a deep copy of this.
+	/**
+	 * Unlike copy, this reuses the storage of the target and does not allocate.
+	 *
+	 * @param target The state to overwrite.
+	 * @throws RuntimeException If the target is not a GameState_Bitboard128 of the same size.
+	 * @see copy
+	 */
+	public void copyInto(final GameStateModule target)
+	{
+		if(!(target instanceof GameState_Bitboard128) || target.getWidth() != WIDTH || target.getHeight() != HEIGHT)
+			throw new RuntimeException("Cannot copy a " + WIDTH + "x" + HEIGHT + " GameState_Bitboard128 into " + target);
+		final GameState_Bitboard128 game = (GameState_Bitboard128) target;
+		System.arraycopy(colorLo, 0, game.colorLo, 0, 2);
+		System.arraycopy(colorHi, 0, game.colorHi, 0, 2);
+		System.arraycopy(moves, 0, game.moves, 0, nplies);
+		System.arraycopy(height, 0, game.height, 0, WIDTH);
+		game.nplies = nplies;
+		game.coins = coins;
+		game.gameOver = gameOver;
+		game.Winner = Winner;
+		game.pointsComputed = false;
+	}
+
+	/// Returns whether a move is legal.
+	/**
+	 * Returns whether it is legal to drop a coin in the specified column.
+	 *
+	 * @param x The column to test.
+	 * @return Whether it is legal to drop a coin in this column.
+	 */
+	public boolean canMakeMove(final int x)
+	{
+		if(x < 0 || x >= WIDTH || gameOver)
+			return false;
+		return height[x] - (x * H1) < HEIGHT;
+	}
+
+	/// Returns every legal column at once.
+	/**
+	 * A column is legal if its height is below the height of the board.
+	 *
+	 * @return A bitmask with bit x set if a coin can be dropped in column x.
+	 * @see GameStateModule.getLegalMoves
+	 */
+	public int getLegalMoves()
+	{
+		if(WIDTH > 32)
+			throw new RuntimeException("Cannot represent the moves of a board wider than 32 columns.");
+		if(gameOver)
+			return 0;
+		int legal = 0;
+		for(int x = 0; x < WIDTH; x++)
+			if(height[x] - (x * H1) < HEIGHT)
+				legal |= 1 << x;
+		return legal;
+	}
+
+	/// Used internally to check for victory.
+	/**
+	 * @param lo Low word of the bitboard from one of the players.
+	 * @param hi High word of the bitboard from one of the players.
+	 * @return Determines if a player has won the game.
+	 */
+	private boolean computeVictory(final long lo, final long hi)
+	{
+		return computeVictory(lo, hi, HEIGHT) // check diagonal \
+			|| computeVictory(lo, hi, H1) // check horizontal -
+			|| computeVictory(lo, hi, H2) // check diagonal /
+			|| computeVictory(lo, hi, 1); // check vertical |
+	}
+
+	/// Checks for four in a row along a single direction.
+	/**
+	 * @param lo Low word of the bitboard from one of the players.
+	 * @param hi High word of the bitboard from one of the players.
+	 * @param d The distance in bits between neighbouring tiles in this direction.
+	 * @return Whether the bitboard contains four in a row along this direction.
+	 */
+	private static boolean computeVictory(final long lo, final long hi, final int d)
+	{
+		final long tempLo = lo & shiftLo(lo, hi, d);
+		final long tempHi = hi & shiftHi(hi, d);
+		return ((tempLo & shiftLo(tempLo, tempHi, 2 * d)) | (tempHi & shiftHi(tempHi, 2 * d))) != 0;
+	}
+
+	/// Undoes the most recent action.
+	/**
+	 * Undoes the last action performed by makeMove.  This function can be called
+	 * multiple successive times, but no more than the number of times that makeMove
+	 * has been called.
+	 *
+	 * @see makeMove
+	 */
+	public void unMakeMove()
+	{
+		final int n = moves[--nplies];
+		final int bit = --height[n];
+		if(bit < 64)
+			colorLo[nplies & 1] ^= 1L << bit;
+		else
+			colorHi[nplies & 1] ^= 1L << (bit - 64);
+		coins--;
+		gameOver = false;
+		pointsComputed = false;
+	}
+
+	/// Makes the specified move for the active player.
+	/**
+	 * Makes the specified move for the active player.  This updates the game
+	 * history and can be undone with unMakeMove.  If the move is illegal,
+	 * throws a RuntimeException exception.
+	 *
+	 * @param x The move to be made.
+	 * @throws RuntimeException If the move is illegal.
+	 * @see unMakeMove
+	 */
+	public void makeMove(final int x)
+	{
+		if(!canMakeMove(x))
+			throw new RuntimeException("Illegal Move: " + x);
+		final int bit = height[x]++;
+		if(bit < 64)
+			colorLo[nplies & 1] |= 1L << bit;
+		else
+			colorHi[nplies & 1] |= 1L << (bit - 64);
+		++coins;
+		if(computeVictory(colorLo[nplies & 1], colorHi[nplies & 1]))
+		{
+			gameOver = true;
+			Winner = (nplies & 1) + 1;
+		}
+		else if(coins == SIZE)
+		{
+			gameOver = true;
+			Winner = 0;
+		}
+		moves[nplies++] = x;
+	}
+
+	/// Check if there exists a victory condition.
+	/**
+	 * @return Whether or not the game is over.
+	 */
+	public boolean isGameOver()
+	{
+		return gameOver;
+	}
+
+	/// Return the winner of the current game.
+	/**
+	 * Returns the index of the winning player.  If player 1 wins, the return
+	 * value is 1.  If player 2 wins, the return value is 2.  On a draw, the
+	 * return value is 0.  If this function is called and the game is not over,
+	 * throws a RuntimeException.
+	 *
+	 * @return The index of the winning player.
+	 * @throws RuntimeException If the game is not over.
+	 * @see isGameOver
+	 */
+	public int getWinner()
+	{
+		if(!gameOver)
+			throw new RuntimeException("Cannot get winner; game isn't over.");
+		return Winner;
+	}
+
+	/// Returns the index of the active player.
+	/**
+	 * @return The 1-based index of the active player.
+	 */
+	public int getActivePlayer()
+	{
+		return (nplies & 1) + 1;
+	}
+
+	/// Returns what coin is at the given location.
+	/**
+	 * Returns the value of the coin at position (x, y).  If there is no coin, the
+	 * return value is 0; otherwise it is the 1-based index of the player who placed the
+	 * coin there.
+	 *
+	 * @param x The x coordinate to look up.
+	 * @param y The y coordinate to look up.
+	 * @return The value of the coin at the given position, or 0 if not present.
+	 */
+	public int getAt(final int x, final int y)
+	{
+		final int i = x * H1 + y;
+		final long bit = 1L << (i & 63);
+		final long[] color = i < 64 ? colorLo : colorHi;
+		if((color[0] & bit) != 0)
+			return 1;
+		if((color[1] & bit) != 0)
+			return 2;
+		return 0;
+	}
+
+	/// Returns the height of the given column.
+	/**
+	 * @param x The x-index of the column to look up.
+	 * @return The height of that column.
+	 */
+	public int getHeightAt(final int x)
+	{
+		return height[x] - (x * H1);
+	}
+
+	/// Returns the width of the board.
+	/**
+	 * @return The width of the board.
+	 */
+	public int getWidth()
+	{
+		return WIDTH;
+	}
+
+	/// Returns the height of the board.
+	/**
+	 * @return The height of the board.
+	 */
+	public int getHeight()
+	{
+		return HEIGHT;
+	}
+
+	/// Returns the number of filled slots
+	/**
+	 * @return The number of filled slots
+	 */
+	public int getCoins()
+	{
+		return coins;
+	}
+
+	/// Returns a key identifying the current position.
+	/**
+	 * The position takes up to 128 bits, so the key is a hash of both player
+	 * bitboards.
+	 *
+	 * @return The key of the current position.
+	 * @see GameStateModule.getPositionKey
+	 */
+	public long getPositionKey()
+	{
+		return PositionKeys.hash(PositionKeys.hash(colorLo[0], colorHi[0]) ^ colorLo[1], colorHi[1]);
+	}
+
+	/// Used by the graphics module.
+	/**
+	 * This function is used by the graphics module.  You will not need to use this
+	 * function.
+	 *
+	 * @return For internal use only.
+	 */
+	public Point getStartPt()
+	{
+		if(!gameOver)
+			throw new RuntimeException("Cannot get start/end points until the game is over");
+		if(!pointsComputed || startPt == null)
+			computePoints();
+		if(startPt == null)
+			throw new RuntimeException("Could not compute points");
+		return startPt;
+	}
+
+	/// Used by the graphics module.
+	/**
+	 * This function is used by the graphics module.  You will not need to use this
+	 * function.
+	 *
+	 * @return For internal use only.
+	 */
+	public Point getEndPt()
+	{
+		if(!gameOver)
+			throw new RuntimeException("Cannot get start/end points until the game is over");
+		if(!pointsComputed || endPt == null)
+			computePoints();
+		if(endPt == null)
+			throw new RuntimeException("Could not compute points");
+		return endPt;
+	}
+
+	/// Used internally to find the start and end coordinates of the victory.
+	private void computePoints()
+	{
+		if(Winner == 0)
+		{
+			startPt = new Point(-1, -1);
+			endPt = new Point(-1, -1);
+		}
+
+		for(int x = 0; x < WIDTH; x++)
+			for(int y = 0; y < HEIGHT; y++)
+			{
+				if(getAt(x, y) != Winner)
+					continue;
+				for(int dx = -1; dx <= 1; dx++)
+					next:
+					for(int dy = -1; dy <= 1; dy++)
+					{
+						if(dx == dy && dy == 0)
+							continue;
+						if(x + (3 * dx) >= WIDTH)
+							continue;
+						if(y + (3 * dy) >= HEIGHT)
+							continue;
+						if(x + (3 * dx) < 0)
+							continue;
+						if(y + (3 * dy) < 0)
+							continue;
+						for(int i = 0; i < 4; i++)
+							if(getAt(x + (i * dx), y + (i * dy)) != Winner)
+								continue next;
+						startPt = new Point(x, y);
+						endPt = new Point(x + (3 * dx), y + (3 * dy));
+						return;
+					}
+			}
+	}
+}
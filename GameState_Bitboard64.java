@@ -0,0 +1,573 @@
+import java.awt.Point;
+
+/// Representation of a game of Connect Four for any board that fits in a single long.
+/**
+ * This class generalizes the bit layout of GameState_Opt7x6 to any width and height
+ * such that width * (height + 1) <= 64.  Each column takes up height + 1 bits, the
+ * extra bit being an always-empty sentinel above the top row which stops the shifts
+ * used for victory detection from wrapping from one column into the next.  For a
+ * 5x4 board the bits are represented in the following manner:
+ *
+ * .............. -= TOP		\n
+ * 3..8.13.18.23				\n
+ * 2..7.12.17.22				\n
+ * 1..6.11.16.21				\n
+ * 0..5.10.15.20 -= BOTTOM		\n
+ *
+ * A bit is set to one it the player has a coin in that position.
+ *
+ * This class is also the template from which GameStateGenerator writes the
+ * size-specific GameState_OptWxH classes.
+ *
+ * @see GameStateModule
+ * @see GameState_Opt7x6
+ * @see GameStateGenerator
+ */
+public final class GameState_Bitboard64 implements GameStateModule, BitboardAccess, BitboardThreats, SymmetricPositionKey
+{
+	private final int WIDTH;
+	private final int HEIGHT;
+	/// Amount to shift the bitboard to move over one column.
+	private final int H1;
+	/// Amount to shift the bitboard to move over one column and up one row.
+	private final int H2;
+	private final int SIZE;
+	/// Bitboard with just the bottom row filled in.
+	private final long BOTTOM;
+	/// Bitboard with just the above-top row filled in.
+	private final long TOP;
+	/// Bitboard with every tile of the board filled in.
+	private final long BOARD;
+	/// Player bitboards.
+	private final long color[] = new long[2];
+	/// History of plays.
+	private final int moves[];
+	/// Number of moves executed.
+	private int nplies = 0;
+	private int coins = 0;
+	/// Holds the bit index of lowest free tile in a given column.
+	private final byte height[];
+	private boolean gameOver = false;
+	private int Winner;
+	private boolean pointsComputed = false;
+	private Point startPt;
+	private Point endPt;
+
+	/// Primary Constructor.
+	/**
+	 * Creates a new game board of the specified width and height.  The starting player
+	 * is player 1 and the board is initially empty and with no undo/redo history.
+	 *
+	 * @param w The width of the board.
+	 * @param h The height of the board.
+	 * @throws IllegalArgumentException If the board does not fit in a long.
+	 * @see fits
+	 */
+	public GameState_Bitboard64(final int w, final int h)
+	{
+		if(!fits(w, h))
+			throw new IllegalArgumentException("A " + w + "x" + h + " board does not fit in 64 bits.");
+		// Board geometry.  GameStateGenerator turns these assignments into constants.
+		WIDTH = w;
+		HEIGHT = h;
+		H1 = h + 1;
+		H2 = h + 2;
+		SIZE = w * h;
+		BOTTOM = columnMask(w, h);
+		TOP = BOTTOM << h;
+		BOARD = BOTTOM * ((1L << h) - 1);
+
+		moves = new int[SIZE];
+		height = new byte[WIDTH];
+		for(int i = 0; i < WIDTH; i++)
+			height[i] = (byte) (H1 * i);
+	}
+
+	/// Returns whether a board of the given size can be represented by this class.
+	/**
+	 * @param w The width of the board.
+	 * @param h The height of the board.
+	 * @return Whether each column plus its sentinel bit fits in 64 bits.
+	 */
+	public static boolean fits(final int w, final int h)
+	{
+		return w > 0 && h > 0 && w * (h + 1) <= 64;
+	}
+
+	/// Bitboard with the bottom tile of every column set.
+	private static long columnMask(final int w, final int h)
+	{
+		long mask = 0L;
+		for(int i = 0; i < w; i++)
+			mask |= 1L << (i * (h + 1));
+		return mask;
+	}
+
+	/// Creates a deep copy of this.
+	public GameState_Bitboard64 copy()
+	{
+		final GameState_Bitboard64 game = new GameState_Bitboard64(WIDTH, HEIGHT);
+		copyInto(game);
+		return game;
+	}
+
+	/// Overwrites another state with a deep copy of this.
+	/**
+	 * Unlike copy, this reuses the storage of the target and does not allocate.
+	 *
+	 * @param target The state to overwrite.
+	 * @throws RuntimeException If the target is not a GameState_Bitboard64 of the same size.
+	 * @see copy
+	 */
+	public void copyInto(final GameStateModule target)
+	{
+		if(!(target instanceof GameState_Bitboard64) || target.getWidth() != WIDTH || target.getHeight() != HEIGHT)
+			throw new RuntimeException("Cannot copy a " + WIDTH + "x" + HEIGHT + " GameState_Bitboard64 into " + target);
+		final GameState_Bitboard64 game = (GameState_Bitboard64) target;
+		System.arraycopy(color, 0, game.color, 0, 2);
+		System.arraycopy(moves, 0, game.moves, 0, nplies);
+		System.arraycopy(height, 0, game.height, 0, WIDTH);
+		game.nplies = nplies;
+		game.coins = coins;
+		game.gameOver = gameOver;
+		game.Winner = Winner;
+		game.pointsComputed = false;
+	}
+
+	/// Returns whether a move is legal.
+	/**
+	 * Returns whether it is legal to drop a coin in the specified column.
+	 *
+	 * @param x The column to test.
+	 * @return Whether it is legal to drop a coin in this column.
+	 */
+	public boolean canMakeMove(final int x)
+	{
+		if(x < 0 || x >= WIDTH || gameOver)
+			return false;
+		return (TOP & (1L << height[x])) == 0;
+	}
+
+	/// Returns every legal column at once.
+	/**
+	 * A column is legal if the next free bit in it is not the sentinel bit.
+	 *
+	 * @return A bitmask with bit x set if a coin can be dropped in column x.
+	 * @see GameStateModule.getLegalMoves
+	 */
+	public int getLegalMoves()
+	{
+		if(gameOver)
+			return 0;
+		int legal = 0;
+		for(int x = 0; x < WIDTH; x++)
+			legal |= (int) (~TOP >>> height[x] & 1) << x;
+		return legal;
+	}
+
+	/// Used internally to check for victory.
+	/**
+	 * Unsigned shifts are used since a board such as 8x7 occupies the sign bit.
+	 *
+	 * @param board Bitboard from one of the players.
+	 * @return Determines if a player has won the game.
+	 */
+	private boolean computeVictory(final long board)
+	{
+		long temp = board & (board >>> HEIGHT);
+		if((temp & (temp >>> 2 * HEIGHT)) != 0) // check diagonal \
+			return true;
+		temp = board & (board >>> H1);
+		if((temp & (temp >>> 2 * H1)) != 0) // check horizontal -
+			return true;
+		temp = board & (board >>> H2); // check diagonal /
+		if((temp & (temp >>> 2 * H2)) != 0)
+			return true;
+		temp = board & (board >>> 1); // check vertical |
+		return (temp & (temp >>> 2)) != 0;
+	}
+
+	/// Undoes the most recent action.
+	/**
+	 * Undoes the last action performed by makeMove.  This function can be called
+	 * multiple successive times, but no more than the number of times that makeMove
+	 * has been called.
+	 *
+	 * @see makeMove
+	 */
+	public void unMakeMove()
+	{
+		final int n = moves[--nplies];
+		color[nplies & 1] ^= 1L << --height[n];
+		coins--;
+		gameOver = false;
+		pointsComputed = false;
+	}
+
+	/// Makes the specified move for the active player.
+	/**
+	 * Makes the specified move for the active player.  This updates the game
+	 * history and can be undone with unMakeMove.  If the move is illegal,
+	 * throws a RuntimeException exception.
+	 *
+	 * @param x The move to be made.
+	 * @throws RuntimeException If the move is illegal.
+	 * @see unMakeMove
+	 */
+	public void makeMove(final int x)
+	{
+		if(!canMakeMove(x))
+			throw new RuntimeException("Illegal Move: " + x);
+		color[nplies & 1] |= 1L << height[x]++;
+		++coins;
+		if(computeVictory(color[nplies & 1]))
+		{
+			gameOver = true;
+			Winner = (nplies & 1) + 1;
+		}
+		else if(coins == SIZE)
+		{
+			gameOver = true;
+			Winner = 0;
+		}
+		moves[nplies++] = x;
+	}
+
+	/// Check if there exists a victory condition.
+	/**
+	 * @return Whether or not the game is over.
+	 */
+	public boolean isGameOver()
+	{
+		return gameOver;
+	}
+
+	/// Return the winner of the current game.
+	/**
+	 * Returns the index of the winning player.  If player 1 wins, the return
+	 * value is 1.  If player 2 wins, the return value is 2.  On a draw, the
+	 * return value is 0.  If this function is called and the game is not over,
+	 * throws a RuntimeException.
+	 *
+	 * @return The index of the winning player.
+	 * @throws RuntimeException If the game is not over.
+	 * @see isGameOver
+	 */
+	public int getWinner()
+	{
+		if(!gameOver)
+			throw new RuntimeException("Cannot get winner; game isn't over.");
+		return Winner;
+	}
+
+	/// Returns the index of the active player.
+	/**
+	 * @return The 1-based index of the active player.
+	 */
+	public int getActivePlayer()
+	{
+		return (nplies & 1) + 1;
+	}
+
+	/// Returns what coin is at the given location.
+	/**
+	 * Returns the value of the coin at position (x, y).  If there is no coin, the
+	 * return value is 0; otherwise it is the 1-based index of the player who placed the
+	 * coin there.
+	 *
+	 * @param x The x coordinate to look up.
+	 * @param y The y coordinate to look up.
+	 * @return The value of the coin at the given position, or 0 if not present.
+	 */
+	public int getAt(final int x, final int y)
+	{
+		final long bit = 1L << (x * H1 + y);
+		if((color[0] & bit) != 0)
+			return 1;
+		if((color[1] & bit) != 0)
+			return 2;
+		return 0;
+	}
+
+	/// Returns the height of the given column.
+	/**
+	 * @param x The x-index of the column to look up.
+	 * @return The height of that column.
+	 */
+	public int getHeightAt(final int x)
+	{
+		return height[x] - (x * H1);
+	}
+
+	/// Returns the width of the board.
+	/**
+	 * @return The width of the board.
+	 */
+	public int getWidth()
+	{
+		return WIDTH;
+	}
+
+	/// Returns the height of the board.
+	/**
+	 * @return The height of the board.
+	 */
+	public int getHeight()
+	{
+		return HEIGHT;
+	}
+
+	/// Returns the number of filled slots
+	/**
+	 * @return The number of filled slots
+	 */
+	public int getCoins()
+	{
+		return coins;
+	}
+
+	/// The distance in bits between the tiles (x, y) and (x + 1, y).
+	/**
+	 * @see BitboardAccess
+	 */
+	public int getBitsPerColumn()
+	{
+		return H1;
+	}
+
+	/// Bitboard with every tile of the board set.
+	/**
+	 * @see BitboardAccess
+	 */
+	public long getBoardBitboard()
+	{
+		return BOARD;
+	}
+
+	/// Bitboard with the bottom tile of every column set.
+	/**
+	 * @see BitboardAccess
+	 */
+	public long getBottomBitboard()
+	{
+		return BOTTOM;
+	}
+
+	/// Bitboard of the coins of one player.
+	/**
+	 * @param player The player {1, 2}.
+	 * @return The tiles holding a coin of the player.
+	 * @see BitboardAccess
+	 */
+	public long getPlayerBitboard(final int player)
+	{
+		return color[player - 1];
+	}
+
+	/// Bitboard of the coins of both players.
+	/**
+	 * @see BitboardAccess
+	 */
+	public long getOccupiedBitboard()
+	{
+		return color[0] | color[1];
+	}
+
+	/// Bitboard of the tiles that the next coin in each column would land on.
+	/**
+	 * Adding BOTTOM to the occupied tiles carries into the lowest empty bit of every
+	 * column; the sentinel bit of a full column is masked off.
+	 *
+	 * @see BitboardAccess
+	 */
+	public long getPlayableBitboard()
+	{
+		return ((color[0] | color[1]) + BOTTOM) & BOARD;
+	}
+
+	/// Returns the columns in which a player would win by dropping a coin right now.
+	/**
+	 * The playable tiles are the occupied tiles plus BOTTOM, which carries into the lowest
+	 * empty bit of every column.  Adding BOARD to the playable threats then carries into
+	 * the sentinel bit of every column holding one, which gives one bit per column.
+	 *
+	 * @param player The player {1, 2} to check.
+	 * @return A bitmask with bit x set if dropping a coin in column x wins the game.
+	 * @see BitboardThreats.getWinningMoves
+	 */
+	public int getWinningMoves(final int player)
+	{
+		if(gameOver)
+			return 0;
+		final long columns = (((getThreats(player) & getPlayableBitboard()) + BOARD) & TOP) >>> HEIGHT;
+		int moves = 0;
+		for(int x = 0; x < WIDTH; x++)
+			moves |= (int) (columns >>> (x * H1) & 1) << x;
+		return moves;
+	}
+
+	/// Returns the empty tiles that would complete four in a row for a player.
+	/**
+	 * For each direction, a tile is a threat if the three tiles on one side of it, or two
+	 * on one side and one on the other, belong to the player.  The sentinel bits stop
+	 * these patterns from wrapping around between columns.
+	 *
+	 * @param player The player {1, 2} to check.
+	 * @return A bitboard of the threat tiles.
+	 * @see BitboardThreats.getThreats
+	 */
+	public long getThreats(final int player)
+	{
+		final long board = color[player - 1];
+		// vertical |
+		long threats = (board << 1) & (board << 2) & (board << 3);
+		threats |= lineThreats(board, H1); // horizontal -
+		threats |= lineThreats(board, HEIGHT); // diagonal \
+		threats |= lineThreats(board, H2); // diagonal /
+		return threats & (BOARD ^ (color[0] | color[1]));
+	}
+
+	/// Threat tiles along one non-vertical direction.
+	/**
+	 * @param board Bitboard from one of the players.
+	 * @param d The distance in bits between neighbouring tiles in this direction.
+	 * @return Every tile that would complete four in a row along this direction.
+	 */
+	private static long lineThreats(final long board, final int d)
+	{
+		long pair = (board << d) & (board << 2 * d);
+		long threats = pair & (board << 3 * d);
+		threats |= pair & (board >>> d);
+		pair = (board >>> d) & (board >>> 2 * d);
+		threats |= pair & (board << d);
+		threats |= pair & (board >>> 3 * d);
+		return threats;
+	}
+
+	/// Returns a key identifying the current position.
+	/**
+	 * The key is exact: adding BOTTOM to the occupied tiles sets the lowest empty bit
+	 * of every column, which encodes the column heights, and player 1's coins tell the
+	 * two colors apart.  The sentinel bit above each column absorbs the carry of a
+	 * full column.
+	 *
+	 * @return The key of the current position.
+	 * @see GameStateModule.getPositionKey
+	 */
+	public long getPositionKey()
+	{
+		return color[0] + (color[0] | color[1]) + BOTTOM;
+	}
+
+	/// Returns the key of the mirrored position.
+	/**
+	 * The exact key is laid out column by column, so mirroring it swaps the columns of
+	 * the key pairwise from the outside in.
+	 *
+	 * @return The key that getPositionKey would return for the mirrored position.
+	 * @see SymmetricPositionKey
+	 */
+	public long getMirroredPositionKey()
+	{
+		final long key = getPositionKey();
+		final long column = (1L << H1) - 1;
+		long mirrored = 0L;
+		for(int x = 0; x < WIDTH; x++)
+			mirrored |= ((key >>> (x * H1)) & column) << ((WIDTH - 1 - x) * H1);
+		return mirrored;
+	}
+
+	/// Returns the smaller of the position key and the mirrored position key.
+	/**
+	 * @return The key shared by this position and its mirror image.
+	 * @see SymmetricPositionKey
+	 */
+	public long getCanonicalPositionKey()
+	{
+		return Math.min(getPositionKey(), getMirroredPositionKey());
+	}
+
+	/// Whether the canonical key is the key of the mirrored position.
+	/**
+	 * @return True if the mirrored key is strictly smaller than the position key.
+	 * @see SymmetricPositionKey
+	 */
+	public boolean isCanonicalMirrored()
+	{
+		return getMirroredPositionKey() < getPositionKey();
+	}
+
+	/// Used by the graphics module.
+	/**
+	 * This function is used by the graphics module.  You will not need to use this
+	 * function.
+	 *
+	 * @return For internal use only.
+	 */
+	public Point getStartPt()
+	{
+		if(!gameOver)
+			throw new RuntimeException("Cannot get start/end points until the game is over");
+		if(!pointsComputed || startPt == null)
+			computePoints();
+		if(startPt == null)
+			throw new RuntimeException("Could not compute points");
+		return startPt;
+	}
+
+	/// Used by the graphics module.
+	/**
+	 * This function is used by the graphics module.  You will not need to use this
+	 * function.
+	 *
+	 * @return For internal use only.
+	 */
+	public Point getEndPt()
+	{
+		if(!gameOver)
+			throw new RuntimeException("Cannot get start/end points until the game is over");
+		if(!pointsComputed || endPt == null)
+			computePoints();
+		if(endPt == null)
+			throw new RuntimeException("Could not compute points");
+		return endPt;
+	}
+
+	/// Used internally to find the start and end coordinates of the victory.
+	private void computePoints()
+	{
+		if(Winner == 0)
+		{
+			startPt = new Point(-1, -1);
+			endPt = new Point(-1, -1);
+		}
+
+		for(int x = 0; x < WIDTH; x++)
+			for(int y = 0; y < HEIGHT; y++)
+			{
+				if(getAt(x, y) != Winner)
+					continue;
+				for(int dx = -1; dx <= 1; dx++)
+					next:
+					for(int dy = -1; dy <= 1; dy++)
+					{
+						if(dx == dy && dy == 0)
+							continue;
+						if(x + (3 * dx) >= WIDTH)
+							continue;
+						if(y + (3 * dy) >= HEIGHT)
+							continue;
+						if(x + (3 * dx) < 0)
+							continue;
+						if(y + (3 * dy) < 0)
+							continue;
+						for(int i = 0; i < 4; i++)
+							if(getAt(x + (i * dx), y + (i * dy)) != Winner)
+								continue next;
+						startPt = new Point(x, y);
+						endPt = new Point(x + (3 * dx), y + (3 * dy));
+						return;
+					}
+			}
+	}
+}
@@ -1,5 +1,6 @@
 import java.awt.Point;
-import java.util.*;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 /// Representation of a game of Connect Four to be used if an optimized version cannot be found.
 /**
@@ -17,20 +18,37 @@ public final class GameState_General implements GameStateModule
 	/// The player that was declared the victor of the game.
 	private int Winner;
 	/// Used by the graphics module for drawing victory states.  You will not need to use this.
-	private Point startPt;
-	/// Used by the graphics module for drawing victory states.  You will not need to use this.
-	private Point endPt;
+	/**
+	 * The winning line is kept as plain coordinates so that makeMove never allocates;
+	 * getStartPt and getEndPt build the Points on demand.
+	 */
+	private int startX;
+	private int startY;
+	private int endX;
+	private int endY;
 	/// Width of the board
 	private int WIDTH;
 	/// Height of the board
 	private int HEIGHT;
 	/// Game history for makeMove / unMakeMove
 	/**
-	 * This stack is used to keep track of the move history for makeMove and unMakeMove.
+	 * This array is used to keep track of the move history for makeMove and unMakeMove.
+	 * The move made at ply i is stored at index i, so Coins doubles as the stack pointer.
 	 */
-	private final Stack<Integer> history = new Stack<Integer>();
+	private final int[] history;
 	/// The number of coins on the board.
 	private int Coins;
+	/// Random keys for every (tile, player) pair, used for Zobrist hashing.
+	/**
+	 * The key of tile (x, y) for player p is stored at index 2 * (x * HEIGHT + y) + p - 1.
+	 * The keys only depend on the board size, so equal positions get equal keys across
+	 * instances, and one table is shared by every instance of a board size.
+	 */
+	private final long[] Zobrist;
+	/// Zobrist tables already built, by width and height.
+	private static final ConcurrentHashMap<Long, long[]> zobristTables = new ConcurrentHashMap<Long, long[]>();
+	/// Zobrist key of the current position: the XOR of the keys of all placed coins.
+	private long Key;
 
 	/// Primary Constructor.
 	/**
@@ -49,22 +67,65 @@ public final class GameState_General implements GameStateModule
 		Coins = 0;
 		Board = new int[WIDTH][HEIGHT];
 		Heights = new int[WIDTH];
+		history = new int[WIDTH * HEIGHT];
+		Zobrist = zobristTable(WIDTH, HEIGHT);
+		Key = 0L;
 		for(int i = 0; i < WIDTH; i++)
 			Arrays.fill(Board[i], 0);
 		Arrays.fill(Heights, 0);
 	}
 
+	/// Returns the shared Zobrist table for a board size, building it on first use.
+	private static long[] zobristTable(final int w, final int h)
+	{
+		final Long key = Long.valueOf((long) w << 32 | h);
+		long[] table = zobristTables.get(key);
+		if(table == null)
+		{
+			// Two threads may both build the table; only one is kept.
+			final long[] built = new long[2 * w * h];
+			for(int i = 0; i < built.length; i++)
+				built[i] = PositionKeys.tileKey(i / 2, i % 2 + 1);
+			table = zobristTables.putIfAbsent(key, built);
+			if(table == null)
+				table = built;
+		}
+		return table;
+	}
+
 	/// Creates a deep copy of this.
 	public GameState_General copy()
 	{
 		final GameState_General game = new GameState_General(WIDTH, HEIGHT);
+		copyInto(game);
+		return game;
+	}
+
+	/// Overwrites another state with a deep copy of this.
+	/**
+	 * Unlike copy, this reuses the storage of the target and does not allocate.
+	 *
+	 * @param target The state to overwrite.
+	 * @throws RuntimeException If the target is not a GameState_General of the same size.
+	 * @see copy
+	 */
+	public void copyInto(final GameStateModule target)
+	{
+		if(!(target instanceof GameState_General) || target.getWidth() != WIDTH || target.getHeight() != HEIGHT)
+			throw new RuntimeException("Cannot copy a " + WIDTH + "x" + HEIGHT + " GameState_General into " + target);
+		final GameState_General game = (GameState_General) target;
 		game.ActivePlayer = ActivePlayer;
 		game.Winner = Winner;
 		game.Coins = Coins;
+		game.Key = Key;
+		game.startX = startX;
+		game.startY = startY;
+		game.endX = endX;
+		game.endY = endY;
 		for(int i = 0; i < WIDTH; i++)
 			System.arraycopy(Board[i], 0, game.Board[i], 0, Board[i].length);
 		System.arraycopy(Heights, 0, game.Heights, 0, Heights.length);
-		return game;
+		System.arraycopy(history, 0, game.history, 0, Coins);
 	}
 
 	/// Returns whether a move is legal.
@@ -79,6 +140,25 @@ public final class GameState_General implements GameStateModule
 		return x >= 0 && x < WIDTH && Heights[x] < HEIGHT && Winner == -1;
 	}
 
+	/// Returns every legal column at once.
+	/**
+	 * @return A bitmask with bit x set if a coin can be dropped in column x.
+	 * @throws RuntimeException If the board is wider than 32 columns.
+	 * @see GameStateModule.getLegalMoves
+	 */
+	public int getLegalMoves()
+	{
+		if(WIDTH > 32)
+			throw new RuntimeException("Cannot represent the moves of a board wider than 32 columns.");
+		if(Winner != -1)
+			return 0;
+		int legal = 0;
+		for(int x = 0; x < WIDTH; x++)
+			if(Heights[x] < HEIGHT)
+				legal |= 1 << x;
+		return legal;
+	}
+
 	/// Makes the specified move for the active player.
 	/**
 	 * Makes the specified move for the active player.  This updates the game
@@ -95,19 +175,19 @@ public final class GameState_General implements GameStateModule
 		if(!canMakeMove(x))
 			throw new RuntimeException("Illegal Move: " + x);
 
+		final int y = Heights[x];
 		// Update the Board
-		Board[x][Heights[x]] = getActivePlayer();
+		Board[x][y] = ActivePlayer;
+		Key ^= Zobrist[2 * (x * HEIGHT + y) + ActivePlayer - 1];
 		// Update the Heights
 		Heights[x]++;
 		// Update the Player
 		ActivePlayer = (ActivePlayer == 1) ? 2 : 1;
 
-		Coins++;
-
 		// Keep track of the history of this move.
-		history.push(x);
+		history[Coins++] = x;
 
-		computeVictory();
+		computeVictory(x, y);
 	}
 
 	/// Undoes the most recent action.
@@ -120,13 +200,13 @@ public final class GameState_General implements GameStateModule
 	 */
 	public void unMakeMove()
 	{
-		final int x = history.pop();
-		Coins--;
+		final int x = history[--Coins];
 		// Switch ActivePlayer
 		ActivePlayer = (ActivePlayer == 1) ? 2 : 1;
 
 		// Update Board
 		Heights[x]--;
+		Key ^= Zobrist[2 * (x * HEIGHT + Heights[x]) + ActivePlayer - 1];
 		Board[x][Heights[x]] = 0;
 		Winner = -1;
 	}
@@ -160,48 +240,68 @@ public final class GameState_General implements GameStateModule
 
 	/// Used internally to check for victory.
 	/**
-	 * Determines if a player has won the game and updates the state accordingly.
+	 * Determines if the coin just dropped at (x, y) won the game and updates the state
+	 * accordingly.  Only the four lines passing through that coin can have been completed
+	 * by the move, so the cost of this check does not depend on the size of the board.
+	 *
+	 * @param x The column of the coin just dropped.
+	 * @param y The row of the coin just dropped.
 	 */
-	private void computeVictory()
+	private void computeVictory(final int x, final int y)
 	{
-		// for each column
-		for(int i = 0; i < WIDTH; i++)
-			// for each row
-			for(int j = 0; j < HEIGHT; j++)
-				// if not empty
-				if(Board[i][j] != 0)
-					for(int dx = -1; dx <= 1; dx++)
-						for(int dy = -1; dy <= 1; dy++)
-						{
-							if(dx == 0 && dy == 0)
-								continue;
-
-							// If extent is out of bounds, abort.
-							if(i + 3 * dx < 0 || i + 3 * dx >= WIDTH || j + 3 * dy < 0 || j + 3 * dy >= HEIGHT)
-								continue;
-
-							boolean victory = true;
-							for(int step = 1; step <= 3; step++)
-								if(Board[i][j] != Board[i + step * dx][j + step * dy])
-								{
-									victory = false;
-									break;
-								}
-
-							if(victory)
-							{
-								startPt = new Point(i, j);
-								endPt = new Point(i + 3 * dx, j + 3 * dy);
-								Winner = Board[i][j];
-								return;
-							}
-						}
+		// Vertical; the coin just dropped is always the top of its column.
+		if(y >= 3 && countLine(x, y, 0, -1) >= 3)
+		{
+			setVictory(x, y, x, y - 3);
+			return;
+		}
+		// Horizontal, then both diagonals.
+		for(int dy = -1; dy <= 1; dy++)
+		{
+			final int back = countLine(x, y, -1, -dy);
+			final int forward = countLine(x, y, 1, dy);
+			if(back + forward >= 3)
+			{
+				setVictory(x - back, y - back * dy, x - back + 3, y + (3 - back) * dy);
+				return;
+			}
+		}
 
 		if(Coins == WIDTH * HEIGHT)
-		{
 			Winner = 0;
-			return;
+	}
+
+	/// Counts the coins matching (x, y) in a line leaving it, not including (x, y) itself.
+	/**
+	 * @param x The column of the starting coin.
+	 * @param y The row of the starting coin.
+	 * @param dx The column step.
+	 * @param dy The row step.
+	 * @return The number of consecutive matching coins, capped at three.
+	 */
+	private int countLine(final int x, final int y, final int dx, final int dy)
+	{
+		final int player = Board[x][y];
+		int count = 0;
+		int i = x + dx;
+		int j = y + dy;
+		while(count < 3 && i >= 0 && i < WIDTH && j >= 0 && j < HEIGHT && Board[i][j] == player)
+		{
+			count++;
+			i += dx;
+			j += dy;
 		}
+		return count;
+	}
+
+	/// Records the winner and the extent of the winning line.
+	private void setVictory(final int x0, final int y0, final int x1, final int y1)
+	{
+		startX = x0;
+		startY = y0;
+		endX = x1;
+		endY = y1;
+		Winner = Board[x0][y0];
 	}
 
 	/// Returns the index of the active player.
@@ -268,6 +368,20 @@ public final class GameState_General implements GameStateModule
 		return Coins;
 	}
 
+	/// Returns a key identifying the current position.
+	/**
+	 * The key is maintained incrementally by makeMove and unMakeMove, which XOR in and
+	 * out the Zobrist key of the tile they change.  Since XOR is order-independent,
+	 * transpositions share a key.
+	 *
+	 * @return The key of the current position.
+	 * @see GameStateModule.getPositionKey
+	 */
+	public long getPositionKey()
+	{
+		return Key;
+	}
+
 	/// Used by the graphics module.
 	/**
 	 * This function is used by the graphics module.  You will not need to use this
@@ -277,7 +391,7 @@ public final class GameState_General implements GameStateModule
 	 */
 	public Point getStartPt()
 	{
-		return startPt;
+		return Winner > 0 ? new Point(startX, startY) : null;
 	}
 
 	/// Used by the graphics module.
@@ -289,6 +403,6 @@ public final class GameState_General implements GameStateModule
 	 */
 	public Point getEndPt()
 	{
-		return endPt;
+		return Winner > 0 ? new Point(endX, endY) : null;
 	}
 }
@@ -18,7 +18,7 @@ import java.awt.Point;
  * @see GameStateModule
  * @author Leonid Shamis
  */
-public final class GameState_Opt7x6 implements GameStateModule
+public final class GameState_Opt7x6 implements GameStateModule, BitboardAccess, BitboardThreats, SymmetricPositionKey
 {
 	private final static int WIDTH = 7;
 	private final static int HEIGHT = 6;
@@ -29,6 +29,17 @@ public final class GameState_Opt7x6 implements GameStateModule
 	private final static int SIZE = HEIGHT * WIDTH;
 	/// Bitboard with just the above-top row filled in.
 	private final static long TOP = 0x1020408102040L;
+	/// Bitboard with just the bottom row filled in.
+	private final static long BOTTOM = TOP >> HEIGHT;
+	/// Bitboard with every tile of the board filled in.
+	private final static long BOARD = BOTTOM * ((1L << HEIGHT) - 1);
+	/// Bitboard with every bit of the first column, sentinel included, filled in.
+	private final static long COLUMN = (1L << H1) - 1;
+	/// Multiplier that gathers bit 7x of a bitboard into bit 36 + x for every column x.
+	/**
+	 * The partial products land on distinct bits, so no carries disturb the gathered bits.
+	 */
+	private final static long GATHER = 0x1041041041L;
 	/// Player bitboards.
 	private final long color[] = new long[2];
 	/// History of plays.
@@ -61,14 +72,31 @@ public final class GameState_Opt7x6 implements GameStateModule
 	public GameState_Opt7x6 copy()
 	{
 		final GameState_Opt7x6 game = new GameState_Opt7x6();
+		copyInto(game);
+		return game;
+	}
+
+	/// Overwrites another state with a deep copy of this.
+	/**
+	 * Unlike copy, this reuses the storage of the target and does not allocate.
+	 *
+	 * @param target The state to overwrite.
+	 * @throws RuntimeException If the target is not a GameState_Opt7x6.
+	 * @see copy
+	 */
+	public void copyInto(final GameStateModule target)
+	{
+		if(!(target instanceof GameState_Opt7x6))
+			throw new RuntimeException("Cannot copy a " + WIDTH + "x" + HEIGHT + " GameState_Opt7x6 into " + target);
+		final GameState_Opt7x6 game = (GameState_Opt7x6) target;
 		System.arraycopy(color, 0, game.color, 0, 2);
-		System.arraycopy(moves, 0, game.moves, 0, SIZE);
+		System.arraycopy(moves, 0, game.moves, 0, nplies);
 		System.arraycopy(height, 0, game.height, 0, WIDTH);
 		game.nplies = nplies;
 		game.coins = coins;
 		game.gameOver = gameOver;
 		game.Winner = Winner;
-		return game;
+		game.pointsComputed = false;
 	}
 
 	/// Returns whether a move is legal.
@@ -86,6 +114,21 @@ public final class GameState_Opt7x6 implements GameStateModule
 		return (newBoard & TOP) == 0;
 	}
 
+	/// Returns every legal column at once.
+	/**
+	 * A column is legal if its top tile is free.  The free top tiles are shifted down
+	 * to the bottom row and gathered into the low bits with a single multiplication.
+	 *
+	 * @return A bitmask with bit x set if a coin can be dropped in column x.
+	 * @see GameStateModule.getLegalMoves
+	 */
+	public int getLegalMoves()
+	{
+		final long free = (~(color[0] | color[1]) & (TOP >> 1)) >>> (HEIGHT - 1);
+		final int legal = (int) ((free * GATHER) >>> 36) & ((1 << WIDTH) - 1);
+		return gameOver ? 0 : legal;
+	}
+
 	/// Used internally to check for victory.
 	/**
 	 * @param board Bitboard from one of the players.
@@ -246,6 +289,172 @@ public final class GameState_Opt7x6 implements GameStateModule
 		return coins;
 	}
 
+	/// The distance in bits between the tiles (x, y) and (x + 1, y).
+	/**
+	 * @see BitboardAccess
+	 */
+	public int getBitsPerColumn()
+	{
+		return H1;
+	}
+
+	/// Bitboard with every tile of the board set.
+	/**
+	 * @see BitboardAccess
+	 */
+	public long getBoardBitboard()
+	{
+		return BOARD;
+	}
+
+	/// Bitboard with the bottom tile of every column set.
+	/**
+	 * @see BitboardAccess
+	 */
+	public long getBottomBitboard()
+	{
+		return BOTTOM;
+	}
+
+	/// Bitboard of the coins of one player.
+	/**
+	 * @param player The player {1, 2}.
+	 * @return The tiles holding a coin of the player.
+	 * @see BitboardAccess
+	 */
+	public long getPlayerBitboard(final int player)
+	{
+		return color[player - 1];
+	}
+
+	/// Bitboard of the coins of both players.
+	/**
+	 * @see BitboardAccess
+	 */
+	public long getOccupiedBitboard()
+	{
+		return color[0] | color[1];
+	}
+
+	/// Bitboard of the tiles that the next coin in each column would land on.
+	/**
+	 * Adding BOTTOM to the occupied tiles carries into the lowest empty bit of every
+	 * column; the sentinel bit of a full column is masked off.
+	 *
+	 * @see BitboardAccess
+	 */
+	public long getPlayableBitboard()
+	{
+		return ((color[0] | color[1]) + BOTTOM) & BOARD;
+	}
+
+	/// Returns the columns in which a player would win by dropping a coin right now.
+	/**
+	 * The playable tiles are the occupied tiles plus BOTTOM, which carries into the lowest
+	 * empty bit of every column.  Adding BOARD to the playable threats then carries into
+	 * the sentinel bit of every column holding one, which gives one bit per column.
+	 *
+	 * @param player The player {1, 2} to check.
+	 * @return A bitmask with bit x set if dropping a coin in column x wins the game.
+	 * @see BitboardThreats.getWinningMoves
+	 */
+	public int getWinningMoves(final int player)
+	{
+		if(gameOver)
+			return 0;
+		final long columns = (((getThreats(player) & getPlayableBitboard()) + BOARD) & TOP) >>> HEIGHT;
+		return (int) ((columns * GATHER) >>> 36) & ((1 << WIDTH) - 1);
+	}
+
+	/// Returns the empty tiles that would complete four in a row for a player.
+	/**
+	 * For each direction, a tile is a threat if the three tiles on one side of it, or two
+	 * on one side and one on the other, belong to the player.  The sentinel bits stop
+	 * these patterns from wrapping around between columns.
+	 *
+	 * @param player The player {1, 2} to check.
+	 * @return A bitboard of the threat tiles.
+	 * @see BitboardThreats.getThreats
+	 */
+	public long getThreats(final int player)
+	{
+		final long board = color[player - 1];
+		// vertical |
+		long threats = (board << 1) & (board << 2) & (board << 3);
+		threats |= lineThreats(board, H1); // horizontal -
+		threats |= lineThreats(board, HEIGHT); // diagonal \
+		threats |= lineThreats(board, H2); // diagonal /
+		return threats & (BOARD ^ (color[0] | color[1]));
+	}
+
+	/// Threat tiles along one non-vertical direction.
+	/**
+	 * @param board Bitboard from one of the players.
+	 * @param d The distance in bits between neighbouring tiles in this direction.
+	 * @return Every tile that would complete four in a row along this direction.
+	 */
+	private static long lineThreats(final long board, final int d)
+	{
+		long pair = (board << d) & (board << 2 * d);
+		long threats = pair & (board << 3 * d);
+		threats |= pair & (board >>> d);
+		pair = (board >>> d) & (board >>> 2 * d);
+		threats |= pair & (board << d);
+		threats |= pair & (board >>> 3 * d);
+		return threats;
+	}
+
+	/// Returns a key identifying the current position.
+	/**
+	 * The key is exact: adding BOTTOM to the occupied tiles sets the lowest empty bit
+	 * of every column, which encodes the column heights, and player 1's coins tell the
+	 * two colors apart.
+	 *
+	 * @return The key of the current position.
+	 * @see GameStateModule.getPositionKey
+	 */
+	public long getPositionKey()
+	{
+		return color[0] + (color[0] | color[1]) + BOTTOM;
+	}
+
+	/// Returns the key of the mirrored position.
+	/**
+	 * The exact key is laid out column by column, so mirroring it swaps columns 0 and 6,
+	 * 1 and 5, and 2 and 4 with a fixed set of masks and shifts.
+	 *
+	 * @return The key that getPositionKey would return for the mirrored position.
+	 * @see SymmetricPositionKey
+	 */
+	public long getMirroredPositionKey()
+	{
+		final long key = getPositionKey();
+		return (key & (COLUMN << 3 * H1))
+			| ((key & COLUMN) << 6 * H1) | ((key >>> 6 * H1) & COLUMN)
+			| ((key & (COLUMN << H1)) << 4 * H1) | ((key >>> 4 * H1) & (COLUMN << H1))
+			| ((key & (COLUMN << 2 * H1)) << 2 * H1) | ((key >>> 2 * H1) & (COLUMN << 2 * H1));
+	}
+
+	/// Returns the smaller of the position key and the mirrored position key.
+	/**
+	 * @return The key shared by this position and its mirror image.
+	 * @see SymmetricPositionKey
+	 */
+	public long getCanonicalPositionKey()
+	{
+		return Math.min(getPositionKey(), getMirroredPositionKey());
+	}
+
+	/// Whether the canonical key is the key of the mirrored position.
+	/**
+	 * @return True if the mirrored key is strictly smaller than the position key.
+	 * @see SymmetricPositionKey
+	 */
+	public boolean isCanonicalMirrored()
+	{
+		return getMirroredPositionKey() < getPositionKey();
+	}
+
 	/// Used by the graphics module.
 	/**
 	 * This function is used by the graphics module.  You will not need to use this
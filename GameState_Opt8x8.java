@@ -20,7 +20,7 @@ import java.util.Arrays;
  * @see GameStateModule
  * @author Leonid Shamis
  */
-public class GameState_Opt8x8 implements GameStateModule
+public class GameState_Opt8x8 implements GameStateModule, BitboardAccess, BitboardThreats, SymmetricPositionKey
 {
 	private final static int WIDTH = 8;
 	private final static int HEIGHT = 8;
@@ -31,6 +31,15 @@ public class GameState_Opt8x8 implements GameStateModule
 	private final static int SIZE = HEIGHT * WIDTH;
 	/// Bitboard completely filled minus the top row.
 	private final static long BUT_TOP = 0x7F7F7F7F7F7F7F7FL;
+	/// Bitboard completely filled minus the bottom row.
+	private final static long BUT_BOTTOM = 0xFEFEFEFEFEFEFEFEL;
+	/// Bitboard with just the bottom row filled in.
+	private final static long BOTTOM = 0x0101010101010101L;
+	/// Multiplier that gathers bit 8x of a bitboard into bit 56 + x for every column x.
+	/**
+	 * The partial products land on distinct bits, so no carries disturb the gathered bits.
+	 */
+	private final static long GATHER = 0x0102040810204080L;
 	/// Player bitboards.
 	private final long color[] = new long[2];
 	/// History of plays.
@@ -63,14 +72,46 @@ public class GameState_Opt8x8 implements GameStateModule
 	public GameState_Opt8x8 copy()
 	{
 		final GameState_Opt8x8 game = new GameState_Opt8x8();
+		copyInto(game);
+		return game;
+	}
+
+	/// Overwrites another state with a deep copy of this.
+	/**
+	 * Unlike copy, this reuses the storage of the target and does not allocate.
+	 *
+	 * @param target The state to overwrite.
+	 * @throws RuntimeException If the target is not a GameState_Opt8x8.
+	 * @see copy
+	 */
+	public void copyInto(final GameStateModule target)
+	{
+		if(!(target instanceof GameState_Opt8x8))
+			throw new RuntimeException("Cannot copy a " + WIDTH + "x" + HEIGHT + " GameState_Opt8x8 into " + target);
+		final GameState_Opt8x8 game = (GameState_Opt8x8) target;
 		System.arraycopy(color, 0, game.color, 0, 2);
-		System.arraycopy(moves, 0, game.moves, 0, SIZE);
+		System.arraycopy(moves, 0, game.moves, 0, nplies);
 		System.arraycopy(Heights, 0, game.Heights, 0, WIDTH);
 		game.nplies = nplies;
 		game.coins = coins;
 		game.gameOver = gameOver;
 		game.Winner = Winner;
-		return game;
+		game.pointsComputed = false;
+	}
+
+	/// Returns every legal column at once.
+	/**
+	 * A column is legal if its top tile is free.  The free top tiles are shifted down
+	 * to the bottom row and gathered into the top byte with a single multiplication.
+	 *
+	 * @return A bitmask with bit x set if a coin can be dropped in column x.
+	 * @see GameStateModule.getLegalMoves
+	 */
+	public int getLegalMoves()
+	{
+		final long free = (~(color[0] | color[1]) >>> (HEIGHT - 1)) & BOTTOM;
+		final int legal = (int) ((free * GATHER) >>> 56);
+		return gameOver ? 0 : legal;
 	}
 
 	/// Used internally to check for victory.
@@ -266,6 +307,172 @@ public class GameState_Opt8x8 implements GameStateModule
 		return coins;
 	}
 
+	/// The distance in bits between the tiles (x, y) and (x + 1, y).
+	/**
+	 * @see BitboardAccess
+	 */
+	public int getBitsPerColumn()
+	{
+		return HEIGHT;
+	}
+
+	/// Bitboard with every tile of the board set.
+	/**
+	 * @see BitboardAccess
+	 */
+	public long getBoardBitboard()
+	{
+		return -1L;
+	}
+
+	/// Bitboard with the bottom tile of every column set.
+	/**
+	 * @see BitboardAccess
+	 */
+	public long getBottomBitboard()
+	{
+		return BOTTOM;
+	}
+
+	/// Bitboard of the coins of one player.
+	/**
+	 * @param player The player {1, 2}.
+	 * @return The tiles holding a coin of the player.
+	 * @see BitboardAccess
+	 */
+	public long getPlayerBitboard(final int player)
+	{
+		return color[player - 1];
+	}
+
+	/// Bitboard of the coins of both players.
+	/**
+	 * @see BitboardAccess
+	 */
+	public long getOccupiedBitboard()
+	{
+		return color[0] | color[1];
+	}
+
+	/// Bitboard of the tiles that the next coin in each column would land on.
+	/**
+	 * These are the free tiles just above an occupied tile or on the bottom row.
+	 *
+	 * @see BitboardAccess
+	 */
+	public long getPlayableBitboard()
+	{
+		final long mask = color[0] | color[1];
+		return (((mask & BUT_TOP) << 1) | BOTTOM) & ~mask;
+	}
+
+	/// Returns the columns in which a player would win by dropping a coin right now.
+	/**
+	 * The playable tiles are the free tiles just above an occupied tile or on the bottom
+	 * row.  A column holds a playable threat if its byte of the bitboard is non-zero,
+	 * which the classic (b & 0x7F) + 0x7F | b test moves into the top bit of the byte.
+	 *
+	 * @param player The player {1, 2} to check.
+	 * @return A bitmask with bit x set if dropping a coin in column x wins the game.
+	 * @see BitboardThreats.getWinningMoves
+	 */
+	public int getWinningMoves(final int player)
+	{
+		if(gameOver)
+			return 0;
+		final long wins = getThreats(player) & getPlayableBitboard();
+		final long columns = ((((wins & BUT_TOP) + BUT_TOP) | wins) & ~BUT_TOP) >>> (HEIGHT - 1);
+		return (int) ((columns * GATHER) >>> 56);
+	}
+
+	/// Returns the empty tiles that would complete four in a row for a player.
+	/**
+	 * There are no spare bits between the columns, so every step along a line masks off
+	 * the row that would wrap into the neighbouring column, as computeVictory does.
+	 *
+	 * @param player The player {1, 2} to check.
+	 * @return A bitboard of the threat tiles.
+	 * @see BitboardThreats.getThreats
+	 */
+	public long getThreats(final int player)
+	{
+		final long board = color[player - 1];
+		long threats = lineThreats(board, 1, BUT_TOP, BUT_BOTTOM); // vertical |
+		threats |= lineThreats(board, HEIGHT, -1L, -1L); // horizontal -
+		threats |= lineThreats(board, FD, BUT_TOP, BUT_BOTTOM); // diagonal /
+		threats |= lineThreats(board, BD, BUT_BOTTOM, BUT_TOP); // diagonal \
+		return threats & ~(color[0] | color[1]);
+	}
+
+	/// Threat tiles along one direction.
+	/**
+	 * Stepping forward moves every coin by d bits towards the higher columns, stepping
+	 * back moves it by d bits towards the lower ones.
+	 *
+	 * @param board Bitboard from one of the players.
+	 * @param d The distance in bits between neighbouring tiles in this direction.
+	 * @param forward The tiles that can step forward without leaving their column.
+	 * @param back The tiles that can step back without leaving their column.
+	 * @return Every tile that would complete four in a row along this direction.
+	 */
+	private static long lineThreats(final long board, final int d, final long forward, final long back)
+	{
+		final long f1 = (board & forward) << d;
+		final long f2 = (f1 & forward) << d;
+		final long f3 = (f2 & forward) << d;
+		final long b1 = (board & back) >>> d;
+		final long b2 = (b1 & back) >>> d;
+		final long b3 = (b2 & back) >>> d;
+		return (f1 & f2 & f3) | (b1 & f1 & f2) | (b2 & b1 & f1) | (b3 & b2 & b1);
+	}
+
+	/// Returns a key identifying the current position.
+	/**
+	 * A full 8x8 board has no spare bits to encode the column heights in a single
+	 * long, so no 64-bit key can tell every position apart, and the key is a hash of
+	 * both player bitboards.  A transposition table keyed on it takes two positions
+	 * with the same key for the same position.
+	 *
+	 * @return The key of the current position.
+	 * @see GameStateModule.getPositionKey
+	 */
+	public long getPositionKey()
+	{
+		return PositionKeys.hash(color[0], color[1]);
+	}
+
+	/// Returns the key of the mirrored position.
+	/**
+	 * Every column is one byte of the bitboards, so reversing their bytes mirrors them.
+	 *
+	 * @return The key that getPositionKey would return for the mirrored position.
+	 * @see SymmetricPositionKey
+	 */
+	public long getMirroredPositionKey()
+	{
+		return PositionKeys.hash(Long.reverseBytes(color[0]), Long.reverseBytes(color[1]));
+	}
+
+	/// Returns the smaller of the position key and the mirrored position key.
+	/**
+	 * @return The key shared by this position and its mirror image.
+	 * @see SymmetricPositionKey
+	 */
+	public long getCanonicalPositionKey()
+	{
+		return Math.min(getPositionKey(), getMirroredPositionKey());
+	}
+
+	/// Whether the canonical key is the key of the mirrored position.
+	/**
+	 * @return True if the mirrored key is strictly smaller than the position key.
+	 * @see SymmetricPositionKey
+	 */
+	public boolean isCanonicalMirrored()
+	{
+		return getMirroredPositionKey() < getPositionKey();
+	}
+
 	/// Used by the graphics module.
 	/**
 	 * This function is used by the graphics module.  You will not need to use this
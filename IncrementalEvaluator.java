@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+/// Heuristic evaluation of a game that is kept up to date move by move.
+/**
+ * Counts, for every line of the LineTable of the board, the coins each player has in it,
+ * and the total weight of the lines each player has at least one coin in.  The
+ * evaluation of a position for a player is the weight of the lines the player has
+ * taken away from the opponent minus the weight of those the opponent has taken away
+ * from the player.
+ *
+ * Every move played on the game must also be passed to play, and every unMakeMove to
+ * undo, after which evaluate is a subtraction:
+ *
+ * \code
+ * final int y = state.getHeightAt(x);
+ * final int player = state.getActivePlayer();
+ * state.makeMove(x);
+ * evaluator.play(x, y, player);
+ * ...
+ * state.unMakeMove();
+ * evaluator.undo();
+ * \endcode
+ *
+ * Neither play nor undo allocate, and neither does reset, which lets one evaluator
+ * count position after position of its board size from scratch.  An evaluator belongs
+ * to one search thread.
+ *
+ * @see LineTable
+ */
+public final class IncrementalEvaluator
+{
+	/// The size of the board.
+	public final int width;
+	public final int height;
+	/// The lines of the board.
+	private final LineTable lines;
+	/// For each player 1 and 2, the number of coins of the player in each line.
+	private final byte[][] coins;
+	/// For each player 1 and 2, the total weight of the lines holding a coin of the player.
+	private final int[] taken;
+	/// The tiles played and by whom, as tile * 2 + player - 1, for undo.
+	private final int[] played;
+	/// Number of entries in played.
+	private int plies;
+
+	/// Constructor.
+	/**
+	 * @param state The game to evaluate, whose coins are counted right away.
+	 */
+	public IncrementalEvaluator(final GameStateModule state)
+	{
+		width = state.getWidth();
+		height = state.getHeight();
+		lines = LineTable.get(width, height);
+		coins = new byte[3][lines.count];
+		taken = new int[3];
+		played = new int[width * height];
+		reset(state);
+	}
+
+	/// Forgets every coin recorded and counts those of another game of the same board size.
+	/**
+	 * @param state The game to evaluate.
+	 * @throws IllegalArgumentException If the game has a different board size.
+	 */
+	public void reset(final GameStateModule state)
+	{
+		if(state.getWidth() != width || state.getHeight() != height)
+			throw new IllegalArgumentException("Expected a " + width + "x" + height + " board, got "
+				+ state.getWidth() + "x" + state.getHeight());
+		Arrays.fill(coins[1], (byte) 0);
+		Arrays.fill(coins[2], (byte) 0);
+		taken[1] = 0;
+		taken[2] = 0;
+		plies = 0;
+
+		for(int x = 0; x < width; x++)
+			for(int y = 0; y < state.getHeightAt(x); y++)
+				add(x * height + y, state.getAt(x, y));
+	}
+
+	/// Records a coin dropped by a player onto tile (x, y).
+	public void play(final int x, final int y, final int player)
+	{
+		final int tile = x * lines.height + y;
+		played[plies++] = tile * 2 + player - 1;
+		add(tile, player);
+	}
+
+	/// Takes back the last coin recorded with play.
+	public void undo()
+	{
+		final int last = played[--plies];
+		final int player = (last & 1) + 1;
+		final byte[] counts = coins[player];
+		final int[] through = lines.linesAt[last >> 1];
+		for(int i = 0; i < through.length; i++)
+			if(--counts[through[i]] == 0)
+				taken[player] -= lines.weight[through[i]];
+	}
+
+	/// Returns the evaluation of the position for a player.
+	/**
+	 * @param player The player {1, 2}.
+	 * @return The total weight of the lines holding a coin of the player, minus that of the
+	 * lines holding a coin of the opponent.
+	 */
+	public int evaluate(final int player)
+	{
+		return taken[player] - taken[3 - player];
+	}
+
+	/// Returns the number of coins a player has in a line of the LineTable.
+	public int getCoins(final int line, final int player)
+	{
+		return coins[player][line];
+	}
+
+	/// Counts a coin of a player on a tile.
+	private void add(final int tile, final int player)
+	{
+		final byte[] counts = coins[player];
+		final int[] through = lines.linesAt[tile];
+		for(int i = 0; i < through.length; i++)
+			if(counts[through[i]]++ == 0)
+				taken[player] += lines.weight[through[i]];
+	}
+}
@@ -0,0 +1,143 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/// The lines of four tiles on a board, with the weights the heuristic evaluations give them.
+/**
+ * A line is any four tiles in a row, column or diagonal, so a coin in every tile of a
+ * line wins the game.  Evaluations such as IncrementalEvaluator score a position by the
+ * lines each player has already put a coin in, which the other player can no longer
+ * win with.
+ *
+ * Lines that cross a center column are worth more, the more so the lower they cross it
+ * (except on the bottom row): a line crossing it in row 1 weighs 4, in row 2 weighs 3,
+ * in row 3 weighs 2 and anywhere else 1.  Vertical lines, and lines that do not cross a
+ * center column, weigh 1.  Boards of odd width have one center column, boards of even
+ * width two, so the weights are always symmetric under mirroring the board.
+ *
+ * Tables are built once per board size and shared, so their arrays must not be modified.
+ *
+ * @see IncrementalEvaluator
+ */
+public final class LineTable
+{
+	/// The four directions a line can run in, as {dx, dy}: horizontal, vertical, and both diagonals.
+	public static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+
+	/// Tables already built, by width and height.
+	private static final ConcurrentHashMap<Long, LineTable> tables = new ConcurrentHashMap<Long, LineTable>();
+
+	/// The size of the board.
+	public final int width;
+	public final int height;
+	/// The number of lines.
+	public final int count;
+	/// For each line, the tile x * height + y it starts at.
+	public final int[] start;
+	/// For each line, the index in DIRECTIONS it runs in from start.
+	public final int[] direction;
+	/// For each line, its weight.
+	public final int[] weight;
+	/// For each tile x * height + y, the lines through it.
+	public final int[][] linesAt;
+
+	/// Returns the table for a board size, building it on first use.
+	/**
+	 * @param width The width of the board.
+	 * @param height The height of the board.
+	 * @return The shared table for the board size.
+	 */
+	public static LineTable get(final int width, final int height)
+	{
+		final Long key = Long.valueOf((long) width << 32 | height);
+		LineTable table = tables.get(key);
+		if(table == null)
+		{
+			// Two threads may both build the table; only one is kept.
+			final LineTable built = new LineTable(width, height);
+			table = tables.putIfAbsent(key, built);
+			if(table == null)
+				table = built;
+		}
+		return table;
+	}
+
+	/// Builds the table for a board size.
+	private LineTable(final int width, final int height)
+	{
+		this.width = width;
+		this.height = height;
+
+		int n = 0;
+		for(int d = 0; d < DIRECTIONS.length; d++)
+			for(int x = 0; x < width; x++)
+				for(int y = 0; y < height; y++)
+					if(fits(x, y, d))
+						n++;
+		count = n;
+		start = new int[n];
+		direction = new int[n];
+		weight = new int[n];
+
+		final int[] linesAtCount = new int[width * height];
+		n = 0;
+		for(int d = 0; d < DIRECTIONS.length; d++)
+			for(int x = 0; x < width; x++)
+				for(int y = 0; y < height; y++)
+					if(fits(x, y, d))
+					{
+						start[n] = x * height + y;
+						direction[n] = d;
+						weight[n] = weigh(x, y, d);
+						for(int i = 0; i < 4; i++)
+							linesAtCount[tile(n, i)]++;
+						n++;
+					}
+
+		linesAt = new int[width * height][];
+		for(int t = 0; t < linesAt.length; t++)
+			linesAt[t] = new int[linesAtCount[t]];
+		final int[] filled = new int[width * height];
+		for(int line = 0; line < count; line++)
+			for(int i = 0; i < 4; i++)
+			{
+				final int t = tile(line, i);
+				linesAt[t][filled[t]++] = line;
+			}
+	}
+
+	/// Returns the i-th tile (0 to 3) of a line, as x * height + y.
+	public int tile(final int line, final int i)
+	{
+		final int[] d = DIRECTIONS[direction[line]];
+		return start[line] + i * (d[0] * height + d[1]);
+	}
+
+	/// Whether a line starting at (x, y) in direction d stays on the board.
+	private boolean fits(final int x, final int y, final int d)
+	{
+		final int endX = x + 3 * DIRECTIONS[d][0];
+		final int endY = y + 3 * DIRECTIONS[d][1];
+		return endX >= 0 && endX < width && endY >= 0 && endY < height;
+	}
+
+	/// The weight of the line starting at (x, y) in direction d.
+	private int weigh(final int x, final int y, final int d)
+	{
+		if(DIRECTIONS[d][0] == 0)
+			return 1;
+		int w = 1;
+		for(int i = 0; i < 4; i++)
+		{
+			final int tx = x + i * DIRECTIONS[d][0];
+			final int ty = y + i * DIRECTIONS[d][1];
+			if(tx == (width - 1) / 2 || tx == width / 2)
+				w = Math.max(w, rowWeight(ty));
+		}
+		return w;
+	}
+
+	/// The weight of a line crossing a center column in row y.
+	private static int rowWeight(final int y)
+	{
+		return y == 0 ? 1 : Math.max(5 - y, 1);
+	}
+}
@@ -21,16 +21,64 @@ public class Main
 		System.out.println("      Example: -p2 RandomAI");
 		System.out.println("    \"-t [Time in ms]\" : Set the maximum amount of time alloted per AI move");
 		System.out.println("      Example: -t 500");
-		System.out.println("    \"-w [int]\" : Set the width of the game board");
+		System.out.println("    \"-w [int]\" : Set the width of the game board, from 4 to 32");
 		System.out.println("      Example: -w 7");
 		System.out.println("    \"-h [int]\" : Set the height of the game board");
 		System.out.println("      Example: -h 6");
 		System.out.println("    \"-seed [int]\" : Set the random seed of hte game");
 		System.out.println("      Example: -s 1");
 		System.out.println("    \"-text\" : Prints using a text-based I/O");
+		System.out.println("    \"-ponder\" : Lets AIs keep thinking during their opponent's turn");
+		System.out.println("    \"-book [file]\" : Lets AIs that support it play from an opening book");
+		System.out.println("      Example: -book opening.book");
 		System.out.println("Note: Later command-line options override earlier ones if they are incompatable\n");
 	}
 
+	/// Creates the fastest available game representation for the given board size.
+	/**
+	 * Prefers a class specialized for the exact board size, either hand-written or
+	 * written by GameStateGenerator, then a bitboard that is parameterized by the board
+	 * size, and finally falls back on GameState_General.
+	 *
+	 * @param width The width of the board.
+	 * @param height The height of the board.
+	 * @return A new, empty game.
+	 */
+	public static GameStateModule createGameState(final int width, final int height)
+	{
+		try
+		{
+			// Load an optimized game representation if possible
+			return (GameStateModule) Class.forName("GameState_Opt" + Integer.toString(width) + "x" + Integer.toString(height)).newInstance();
+		}
+		catch(Exception e)
+		{
+			// Fall through to the generic representations
+		}
+		// Use a generic bitboard if the board fits in one or two longs
+		if(GameState_Bitboard64.fits(width, height))
+			return new GameState_Bitboard64(width, height);
+		if(GameState_Bitboard128.fits(width, height))
+			return new GameState_Bitboard128(width, height);
+		// Otherwise use a generic game representation
+		return new GameState_General(width, height);
+	}
+
+	/// Hands an opening book to the AIs that can play from one.
+	/**
+	 * AIs never look for a book on their own, so that a game plays the same wherever
+	 * it is started from.
+	 *
+	 * @param players The AIs of the game; null entries are skipped.
+	 * @param book The book file, or null for none.
+	 */
+	public static void useOpeningBook(final AIModule[] players, final String book)
+	{
+		for(int i = 0; i < players.length; i++)
+			if(players[i] instanceof alphabeta_MatthewMartin)
+				((alphabeta_MatthewMartin) players[i]).openingBookFile = book;
+	}
+
 	/// Program startup function.
 	public static void main(String[] args)
 	{
@@ -43,6 +91,8 @@ public class Main
 		// Default height to 6
 		int height = 6;
 		boolean text = false;
+		boolean ponder = false;
+		String book = null;
 		long seed = System.currentTimeMillis();
 
 		// Parse through the command line arguements
@@ -66,6 +116,9 @@ public class Main
 					width = Integer.parseInt(args[i + 1]);
 					if(width < 4)
 						throw new IllegalArgumentException("Widths must be at least four.");
+					// Moves are passed around as bit masks of columns, see GameStateModule.getLegalMoves
+					if(width > 32)
+						throw new IllegalArgumentException("Widths must be at most 32.");
 				}
 				else if(args[i].equalsIgnoreCase("-h"))
 				{
@@ -79,6 +132,14 @@ public class Main
 					// Compensate for i += 2
 					i--;
 				}
+				else if(args[i].equalsIgnoreCase("-ponder"))
+				{
+					ponder = true;
+					// Compensate for i += 2
+					i--;
+				}
+				else if(args[i].equalsIgnoreCase("-book"))
+					book = args[i + 1];
 				else if(args[i].equalsIgnoreCase("--help"))
 				{
 					helpPrinter();
@@ -123,18 +184,10 @@ public class Main
 			System.exit(5);
 		}
 
+		useOpeningBook(players, book);
+
 		// Create a new game
-		GameStateModule game;
-		try
-		{
-			// Load an optimized game representation if possible
-			game = (GameStateModule) Class.forName("GameState_Opt" + Integer.toString(width) + "x" + Integer.toString(height)).newInstance();
-		}
-		catch(Exception e)
-		{
-			// Otherwise use a generic game representation
-			game = new GameState_General(width, height);
-		}
+		GameStateModule game = createGameState(width, height);
 
 		IOModule io;
 
@@ -155,7 +208,7 @@ public class Main
 		}
 
 		// Turn on the turn based system
-		GameController controller = new GameController(game, io, players, AI_time);
+		GameController controller = new GameController(game, io, players, AI_time, ponder);
 		controller.play();
 		// Print out the results of the match
 		if(game.getWinner() == 0)
@@ -21,13 +21,16 @@ public class Main_test
 		System.out.println("      Example: -p2 RandomAI");
 		System.out.println("    \"-t [Time in ms]\" : Set the maximum amount of time alloted per AI move");
 		System.out.println("      Example: -t 500");
-		System.out.println("    \"-w [int]\" : Set the width of the game board");
+		System.out.println("    \"-w [int]\" : Set the width of the game board, from 4 to 32");
 		System.out.println("      Example: -w 7");
 		System.out.println("    \"-h [int]\" : Set the height of the game board");
 		System.out.println("      Example: -h 6");
 		System.out.println("    \"-seed [int]\" : Set the random seed of hte game");
 		System.out.println("      Example: -s 1");
 		System.out.println("    \"-text\" : Prints using a text-based I/O");
+		System.out.println("    \"-ponder\" : Lets AIs keep thinking during their opponent's turn");
+		System.out.println("    \"-book [file]\" : Lets AIs that support it play from an opening book");
+		System.out.println("      Example: -book opening.book");
 		System.out.println("Note: Later command-line options override earlier ones if they are incompatable\n");
 	}
 
@@ -43,6 +46,8 @@ public class Main_test
 		// Default height to 6
 		int height = 6;
 		boolean text = false;
+		boolean ponder = false;
+		String book = null;
 		long seed = System.currentTimeMillis();
 
 		// Parse through the command line arguements
@@ -66,6 +71,9 @@ public class Main_test
 					width = Integer.parseInt(args[i + 1]);
 					if(width < 4)
 						throw new IllegalArgumentException("Widths must be at least four.");
+					// Moves are passed around as bit masks of columns, see GameStateModule.getLegalMoves
+					if(width > 32)
+						throw new IllegalArgumentException("Widths must be at most 32.");
 				}
 				else if(args[i].equalsIgnoreCase("-h"))
 				{
@@ -79,6 +87,14 @@ public class Main_test
 					// Compensate for i += 2
 					i--;
 				}
+				else if(args[i].equalsIgnoreCase("-ponder"))
+				{
+					ponder = true;
+					// Compensate for i += 2
+					i--;
+				}
+				else if(args[i].equalsIgnoreCase("-book"))
+					book = args[i + 1];
 				else if(args[i].equalsIgnoreCase("--help"))
 				{
 					helpPrinter();
@@ -123,6 +139,8 @@ public class Main_test
 			System.exit(5);
 		}
 		
+		Main.useOpeningBook(players, book);
+
 		int p1W = 0;
 		int p2W = 0;
 		int draw = 0;
@@ -137,17 +155,7 @@ public class Main_test
 			}
 			
 			// Create a new game
-			GameStateModule game;
-			try
-			{
-				// Load an optimized game representation if possible
-				game = (GameStateModule) Class.forName("GameState_Opt" + Integer.toString(width) + "x" + Integer.toString(height)).newInstance();
-			}
-			catch(Exception e)
-			{
-				// Otherwise use a generic game representation
-				game = new GameState_General(width, height);
-			}
+			GameStateModule game = Main.createGameState(width, height);
 
 			IOModule io;
 
@@ -167,7 +175,7 @@ public class Main_test
 			}
 
 			// Turn on the turn based system
-			GameController_test controller = new GameController_test(game, io, players, AI_time);
+			GameController_test controller = new GameController_test(game, io, players, AI_time, ponder);
 			controller.play();
 			
 			// Print out the results of the match
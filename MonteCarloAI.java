@@ -44,8 +44,9 @@ public class MonteCarloAI extends AIModule
 		// have used Integer.MIN_VALUE, but this is a "weird number" because
 		// -Integer.MIN_VALUE == Integer.MIN_VALUE.
 		int[] values = new int[state.getWidth()];
+		final int legal = state.getLegalMoves();
 		for(int i = 0; i < values.length; ++i)
-			if(!state.canMakeMove(i))
+			if((legal & (1 << i)) == 0)
 				values[i] = -Integer.MAX_VALUE;
 
 		// Start simulating games! Continue until told to stop.
@@ -67,11 +68,10 @@ public class MonteCarloAI extends AIModule
 	 */
 	private int getMove(final GameStateModule state)
 	{
-		// Fill in what moves are legal.
+		// Fill in what moves are legal, peeling off the lowest set bit of the mask each time.
 		int numLegalMoves = 0;
-		for(int i = 0; i < state.getWidth(); ++i)
-			if(state.canMakeMove(i))
-				moves[numLegalMoves++] = i;
+		for(int legal = state.getLegalMoves(); legal != 0; legal &= legal - 1)
+			moves[numLegalMoves++] = Integer.numberOfTrailingZeros(legal);
 
 		// Pick one randomly.
 		final int n = r.nextInt(numLegalMoves);
@@ -116,12 +116,15 @@ public class MonteCarloAI extends AIModule
 	 */
 	private int playRandomGame(final GameStateModule state)
 	{
-		// Duplicate the state to prevent changes from propagating.
-		final GameStateModule game = state.copy();
+		// Duplicate the state to prevent changes from propagating.  The duplicate comes
+		// from a pool so that we don't allocate a new state for every game.
+		final GameStateModule game = GameStatePool.acquire(state);
 		while(!game.isGameOver())
 			game.makeMove(getMove(game));
 
 		// It's over!  Return who won.
-		return game.getWinner();
+		final int winner = game.getWinner();
+		GameStatePool.release(game);
+		return winner;
 	}
 }
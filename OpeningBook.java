@@ -0,0 +1,234 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/// Book of best moves for the first plies of a game, read from a memory-mapped file.
+/**
+ * The book is a binary file written by OpeningBookGenerator.  It holds a record for
+ * every position it knows, keyed on SymmetricPositionKey.getCanonicalPositionKey, so a
+ * position and its mirror image share one record.  Records are sorted by key, and a
+ * lookup is a binary search over the mapped file, which takes microseconds and does not
+ * read the whole book into memory.
+ *
+ * \code
+ * int    MAGIC
+ * int    VERSION
+ * int    width
+ * int    height
+ * int    length of the name of the GameStateModule class the keys come from
+ * byte[] that name, in UTF-8
+ * int    number of records
+ * then, for each record, sorted by key:
+ * long   canonical position key
+ * int    best move, in the orientation of the canonical key
+ * int    score of the position for the side to move
+ * \endcode
+ *
+ * Position keys differ between representations, so a book only answers for states of
+ * the class and board size it was written for.
+ *
+ * @see OpeningBookGenerator
+ * @see SymmetricPositionKey
+ */
+public final class OpeningBook
+{
+	/// First int of every book file.
+	public static final int MAGIC = 0x43344F42;
+	/// Version of the file format.
+	public static final int VERSION = 1;
+	/// Bytes per record.
+	private static final int RECORD_SIZE = 16;
+
+	/// The mapped file.
+	private final ByteBuffer buffer;
+	/// The board size and state class the book was written for.
+	private final int width;
+	private final int height;
+	private final String stateClass;
+	/// Number of records.
+	private final int count;
+	/// Offset of the first record.
+	private final int records;
+
+	/// Maps a book file.
+	/**
+	 * @param file The book.
+	 * @return The book.
+	 * @throws IOException If the file cannot be read or is not a book.
+	 */
+	public static OpeningBook open(final File file) throws IOException
+	{
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try
+		{
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new OpeningBook(buffer, file);
+		}
+		finally
+		{
+			// The mapping stays valid after the channel is closed.
+			channel.close();
+		}
+	}
+
+	/// Reads the header of a mapped book.
+	private OpeningBook(final ByteBuffer buffer, final File file) throws IOException
+	{
+		this.buffer = buffer;
+		try
+		{
+			if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+				throw new IOException(file + " is not an opening book of version " + VERSION);
+			width = buffer.getInt(8);
+			height = buffer.getInt(12);
+			final int nameLength = buffer.getInt(16);
+			final byte[] name = new byte[nameLength];
+			for(int i = 0; i < nameLength; i++)
+				name[i] = buffer.get(20 + i);
+			stateClass = new String(name, StandardCharsets.UTF_8);
+			count = buffer.getInt(20 + nameLength);
+			records = 24 + nameLength;
+		}
+		catch(IndexOutOfBoundsException e)
+		{
+			throw new IOException(file + " is truncated");
+		}
+		if((long) records + (long) count * RECORD_SIZE > buffer.capacity())
+			throw new IOException(file + " is truncated");
+	}
+
+	/// Returns the width of the board the book was written for.
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/// Returns the height of the board the book was written for.
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/// Returns the number of positions in the book.
+	public int size()
+	{
+		return count;
+	}
+
+	/// Whether the book can answer for a state, which needs the same class and board size.
+	public boolean accepts(final GameStateModule state)
+	{
+		return state instanceof SymmetricPositionKey && state.getWidth() == width && state.getHeight() == height
+			&& state.getClass().getName().equals(stateClass);
+	}
+
+	/// Looks up the best move of a position.
+	/**
+	 * @param state The position.
+	 * @return The best move, or -1 if the book does not hold the position or does not
+	 * accept the state.
+	 */
+	public int findMove(final GameStateModule state)
+	{
+		if(!accepts(state))
+			return -1;
+		final SymmetricPositionKey keys = (SymmetricPositionKey) state;
+		final int i = find(keys.getCanonicalPositionKey());
+		if(i < 0)
+			return -1;
+		final int move = buffer.getInt(records + i * RECORD_SIZE + 8);
+		return keys.isCanonicalMirrored() ? width - 1 - move : move;
+	}
+
+	/// Looks up the score of a position.
+	/**
+	 * @param state The position.
+	 * @return The score for the side to move, or Integer.MIN_VALUE if the book does not
+	 * hold the position or does not accept the state.
+	 */
+	public int findScore(final GameStateModule state)
+	{
+		if(!accepts(state))
+			return Integer.MIN_VALUE;
+		final int i = find(((SymmetricPositionKey) state).getCanonicalPositionKey());
+		return i < 0 ? Integer.MIN_VALUE : buffer.getInt(records + i * RECORD_SIZE + 12);
+	}
+
+	/// Returns the index of the record with a key, or -1.
+	private int find(final long key)
+	{
+		int low = 0;
+		int high = count - 1;
+		while(low <= high)
+		{
+			final int middle = (low + high) >>> 1;
+			final long k = buffer.getLong(records + middle * RECORD_SIZE);
+			if(k < key)
+				low = middle + 1;
+			else if(k > key)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	/// Writes a book file.
+	/**
+	 * @param file The file to write.
+	 * @param sample A state of the class and board size the keys come from.
+	 * @param keys The canonical position keys, which must be distinct.
+	 * @param moves The best move of each position, in the orientation of its canonical key.
+	 * @param scores The score of each position for the side to move.
+	 * @param n The number of positions.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(final File file, final GameStateModule sample, final long[] keys, final int[] moves,
+		final int[] scores, final int n) throws IOException
+	{
+		// Sort the records by key through an index.
+		final Integer[] index = new Integer[n];
+		for(int i = 0; i < n; i++)
+			index[i] = i;
+		Arrays.sort(index, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(final Integer a, final Integer b)
+			{
+				return Long.compare(keys[a], keys[b]);
+			}
+		});
+
+		final byte[] name = sample.getClass().getName().getBytes(StandardCharsets.UTF_8);
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(sample.getWidth());
+			out.writeInt(sample.getHeight());
+			out.writeInt(name.length);
+			out.write(name);
+			out.writeInt(n);
+			for(int i = 0; i < n; i++)
+			{
+				out.writeLong(keys[index[i]]);
+				out.writeInt(moves[index[i]]);
+				out.writeInt(scores[index[i]]);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
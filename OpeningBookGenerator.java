@@ -0,0 +1,127 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/// Writes an OpeningBook for one board size.
+/**
+ * Every position reachable in fewer than the given number of plies is searched to a
+ * fixed depth with alphabeta_MatthewMartin, without a time limit, and its best move
+ * and score are written to a book file.  A position and its mirror image are searched
+ * once.  Positions near enough the end of the game are solved exactly, as the AI
+ * would during a game.
+ *
+ * Command line: java OpeningBookGenerator [-w width] [-h height] [-plies n] [-depth d] [-out file]
+ *
+ * The defaults write the positions of the first 6 plies of a 7x6 game, searched to
+ * depth 12, to opening.book, which Main hands to alphabeta_MatthewMartin with
+ * -book opening.book.
+ * The book is only used with the game representation it was written for, so it must
+ * be written by the same build of the program that plays with it.
+ *
+ * \code
+ * java OpeningBookGenerator -plies 8 -depth 14
+ * \endcode
+ *
+ * @see OpeningBook
+ */
+public final class OpeningBookGenerator
+{
+	private OpeningBookGenerator()
+	{
+	}
+
+	/// Program startup function.
+	public static void main(String[] args) throws IOException
+	{
+		int width = 7;
+		int height = 6;
+		int plies = 6;
+		int depth = 12;
+		File out = new File("opening.book");
+
+		for(int i = 0; i < args.length; i++)
+		{
+			if(args[i].equalsIgnoreCase("-w"))
+				width = Integer.parseInt(args[++i]);
+			else if(args[i].equalsIgnoreCase("-h"))
+				height = Integer.parseInt(args[++i]);
+			else if(args[i].equalsIgnoreCase("-plies"))
+				plies = Integer.parseInt(args[++i]);
+			else if(args[i].equalsIgnoreCase("-depth"))
+				depth = Integer.parseInt(args[++i]);
+			else if(args[i].equalsIgnoreCase("-out"))
+				out = new File(args[++i]);
+			else
+				throw new IllegalArgumentException("Unknown argument " + args[i]);
+		}
+		if(depth < 1)
+			throw new IllegalArgumentException("The search depth must be at least 1, got " + depth);
+
+		final GameStateModule game = Main.createGameState(width, height);
+		if(!(game instanceof SymmetricPositionKey))
+			throw new IllegalArgumentException(game.getClass().getName() + " has no canonical position keys for a book.");
+
+		// Collect the positions first, so that progress can be shown as a fraction.
+		final GameStateModule[] positions = collect(game, plies);
+		System.out.println(positions.length + " positions in the first " + plies + " plies of a " + width + "x" + height + " game");
+
+		final alphabeta_MatthewMartin ai = new alphabeta_MatthewMartin();
+		ai.openingBookFile = null;
+		// Every record needs a score, including those of positions with a single legal move.
+		ai.playForcedMovesAtOnce = false;
+		ai.maxDepth = depth;
+		ai.terminate = false;
+
+		final long[] keys = new long[positions.length];
+		final int[] moves = new int[positions.length];
+		final int[] scores = new int[positions.length];
+		final long start = System.currentTimeMillis();
+		for(int i = 0; i < positions.length; i++)
+		{
+			final GameStateModule position = positions[i];
+			ai.getNextMove(position);
+
+			// Records are kept in the orientation of the canonical key.
+			final SymmetricPositionKey symmetric = (SymmetricPositionKey) position;
+			keys[i] = symmetric.getCanonicalPositionKey();
+			moves[i] = symmetric.isCanonicalMirrored() ? width - 1 - ai.chosenMove : ai.chosenMove;
+			scores[i] = ai.chosenScore;
+
+			if((i + 1) % 100 == 0 || i + 1 == positions.length)
+				System.out.println("Searched " + (i + 1) + "/" + positions.length + " in "
+					+ (System.currentTimeMillis() - start) / 1000 + " s");
+		}
+
+		OpeningBook.write(out, game, keys, moves, scores, positions.length);
+		System.out.println("Wrote " + out);
+	}
+
+	/// Returns a copy of every position that is not over and has fewer than plies coins, one per canonical key.
+	private static GameStateModule[] collect(final GameStateModule game, final int plies)
+	{
+		final HashSet<Long> seen = new HashSet<Long>();
+		final List<GameStateModule> positions = new ArrayList<GameStateModule>();
+		collect(game, plies, seen, positions);
+		return positions.toArray(new GameStateModule[positions.size()]);
+	}
+
+	/// Adds a position and the positions after it, depth first.
+	private static void collect(final GameStateModule state, final int plies, final HashSet<Long> seen,
+		final List<GameStateModule> positions)
+	{
+		if(state.isGameOver() || state.getCoins() >= plies)
+			return;
+		if(!seen.add(Long.valueOf(((SymmetricPositionKey) state).getCanonicalPositionKey())))
+			return;
+		positions.add(state.copy());
+		for(int x = 0; x < state.getWidth(); x++)
+			if(state.canMakeMove(x))
+			{
+				state.makeMove(x);
+				collect(state, plies, seen, positions);
+				state.unMakeMove();
+			}
+	}
+}
@@ -0,0 +1,77 @@
+/// Hash functions shared by the position keys of the GameStates.
+/**
+ * A board that fits in a long with a spare bit per column keys a position by its exact
+ * encoding.  Larger boards have more than 64 bits of position and cannot, so they hash
+ * their coins into a key with the functions here.  Distinct positions can then share
+ * a key, and a cache keyed on them has to accept the odd wrong answer.
+ *
+ * @see GameStateModule.getPositionKey
+ */
+public final class PositionKeys
+{
+	/// 2^64 divided by the golden ratio, which spreads consecutive integers over all bits.
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+	private PositionKeys()
+	{
+	}
+
+	/// Scrambles the bits of a long (the finalizer of the SplitMix64 generator).
+	/**
+	 * This is a bijection, so distinct inputs give distinct outputs.
+	 *
+	 * @param z The long to scramble.
+	 * @return The scrambled long.
+	 */
+	public static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/// Hashes two words, such as the bitboards of the two players, into one key.
+	/**
+	 * The first word is scrambled before the second is mixed in, so positions that only
+	 * differ by moving bits from one word to the other do not collide more often than
+	 * any other pair.
+	 *
+	 * @param a The first word.
+	 * @param b The second word.
+	 * @return The key of the pair.
+	 */
+	public static long hash(final long a, final long b)
+	{
+		return mix(mix(a + GOLDEN) ^ b);
+	}
+
+	/// Returns the Zobrist key of a coin on a tile.
+	/**
+	 * @param tile The index of the tile, x * height + y.
+	 * @param player The player {1, 2} whose coin it is.
+	 * @return The key to XOR into a position key for the coin.
+	 */
+	public static long tileKey(final int tile, final int player)
+	{
+		return mix(GOLDEN * (2 * tile + player));
+	}
+
+	/// Hashes a position tile by tile.
+	/**
+	 * The key is the XOR of the tileKey of every coin, which is what GameState_General
+	 * keeps up to date move by move.  This reads every coin with getAt, so it is only
+	 * meant for GameStates that have no key of their own.
+	 *
+	 * @param state The position to hash.
+	 * @return The key of the position.
+	 */
+	public static long hashTiles(final GameStateModule state)
+	{
+		final int height = state.getHeight();
+		long key = 0L;
+		for(int x = 0; x < state.getWidth(); x++)
+			for(int y = 0; y < state.getHeightAt(x); y++)
+				key ^= tileKey(x * height + y, state.getAt(x, y));
+		return key;
+	}
+}
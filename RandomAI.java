@@ -15,10 +15,13 @@ public class RandomAI extends AIModule
 	public void getNextMove(final GameStateModule game)
 	{
 		final Random r = new Random();
-		// set chosenMove to a random column
-		int move = r.nextInt(game.getWidth());
-		while(!game.canMakeMove(move))
-			move = r.nextInt(game.getWidth());
-		chosenMove = move;
+		// set chosenMove to a random legal column
+		int legal = game.getLegalMoves();
+		if(legal == 0)
+			return;
+		// skip over a random number of the legal columns
+		for(int n = r.nextInt(Integer.bitCount(legal)); n > 0; n--)
+			legal &= legal - 1;
+		chosenMove = Integer.numberOfTrailingZeros(legal);
 	}
 }
\ No newline at end of file
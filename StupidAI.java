@@ -12,11 +12,9 @@ public class StupidAI extends AIModule
 {
 	public void getNextMove(final GameStateModule game)
 	{
-		for(int i = 0; i < game.getWidth(); i++)
-			if(game.canMakeMove(i))
-			{
-				chosenMove = i;
-				break;
-			}
+		// The lowest set bit of the legal move mask is the leftmost legal column.
+		final int legal = game.getLegalMoves();
+		if(legal != 0)
+			chosenMove = Integer.numberOfTrailingZeros(legal);
 	}
 }
@@ -0,0 +1,23 @@
+/// Optional interface for GameStates that can key a position and its mirror image alike.
+/**
+ * Connect Four is symmetric under reflecting the board left to right, so a position and
+ * its mirror image have the same value and mirrored best moves.  Caches keyed on
+ * getCanonicalPositionKey hold each such pair once.  When isCanonicalMirrored is true,
+ * columns stored under the canonical key must be flipped with x -> width - 1 - x
+ * on the way in and out.
+ *
+ * @see GameStateModule.getPositionKey
+ */
+public interface SymmetricPositionKey
+{
+	/// Returns the key that getPositionKey would return for the mirrored position.
+    public long getMirroredPositionKey();
+	/// Returns the smaller of getPositionKey and getMirroredPositionKey.
+    public long getCanonicalPositionKey();
+	/// Whether getCanonicalPositionKey is the key of the mirrored position.
+	/**
+	 * @return True if the mirrored key is strictly smaller than the position key, so
+	 * symmetric positions report false.
+	 */
+    public boolean isCanonicalMirrored();
+}
@@ -0,0 +1,162 @@
+/// Decides how deep an iterative deepening search can go in the time of a turn.
+/**
+ * An iteration that is still running when time runs out is thrown away, so starting
+ * one that cannot finish wastes the rest of the turn.  The time manager measures each
+ * iteration with System.nanoTime, estimates the effective branching factor from the
+ * number of nodes of consecutive iterations, and only lets a new iteration start if
+ * the last one times that factor still fits in the turn.  Once the best move has come
+ * out of several iterations in a row unchanged, it only lets iterations start in the
+ * first 60% of the turn, since a deeper search is then unlikely to change the move.
+ *
+ * A search reads the clock through isOutOfTime, which it should only call every few
+ * hundred nodes.  The deadline is a little before the end of the turn, so that a
+ * search stops on its own before the GameController sets terminate.
+ *
+ * \code
+ * timeManager.start(timeLimit);
+ * for(int depth = 1; timeManager.canStartIteration(); depth++)
+ * {
+ *     timeManager.iterationStarted();
+ *     search(depth);  // stops early if timeManager.isOutOfTime()
+ *     timeManager.iterationFinished(bestMove, nodes);
+ * }
+ * \endcode
+ *
+ * One thread drives a time manager; isOutOfTime may be called by any thread.
+ *
+ * @see AIModule.timeLimit
+ */
+public final class TimeManager
+{
+	/// Fraction of the time limit a search may use.
+	public static final double USABLE_FRACTION = 0.95;
+	/// Number of iterations in a row with the same best move after which the move counts as stable.
+	public static final int STABLE_ITERATIONS = 6;
+	/// Fraction of the usable time in which iterations may start once the best move is stable.
+	public static final double STABLE_FRACTION = 0.6;
+	/// Branching factor assumed until two iterations have been measured.
+	public static final double DEFAULT_BRANCHING_FACTOR = 4;
+
+	/// System.nanoTime when the search started.
+	private long startTime;
+	/// Nanoseconds the search may use, or 0 for no limit.
+	private volatile long budget;
+	/// System.nanoTime when the current iteration started.
+	private long iterationStart;
+	/// Nanoseconds and nodes taken by the last finished iteration, or 0 before the first.
+	private long lastIterationTime;
+	private long lastIterationNodes;
+	/// Nodes searched before the current iteration.
+	private long nodesBefore;
+	/// Smoothed effective branching factor, or 0 until measured.
+	private double branchingFactor;
+	/// Best move of the last finished iteration, and the number of iterations in a row that found it.
+	private int lastBestMove;
+	private int stableIterations;
+
+	/// Starts timing a search.
+	/**
+	 * @param timeLimit Milliseconds the search may take, or 0 for no limit, in which
+	 * case only the terminate flag of the AI stops it.
+	 */
+	public void start(final int timeLimit)
+	{
+		startTime = System.nanoTime();
+		budget = timeLimit > 0 ? (long) (timeLimit * 1000000L * USABLE_FRACTION) : 0;
+		iterationStart = startTime;
+		lastIterationTime = 0;
+		lastIterationNodes = 0;
+		nodesBefore = 0;
+		branchingFactor = 0;
+		lastBestMove = -1;
+		stableIterations = 0;
+	}
+
+	/// Returns the nanoseconds since start.
+	public long getElapsed()
+	{
+		return System.nanoTime() - startTime;
+	}
+
+	/// Whether the search has used up its time.  This reads the clock, so call it sparingly.
+	public boolean isOutOfTime()
+	{
+		final long b = budget;
+		return b != 0 && System.nanoTime() - startTime >= b;
+	}
+
+	/// Returns the nanoseconds left until a fraction of the time has been used.
+	/**
+	 * @param fraction The fraction of the usable time, from 0 to 1.
+	 * @return The nanoseconds left, at least 1, or 0 if there is no time limit.
+	 */
+	public long getRemaining(final double fraction)
+	{
+		if(budget == 0)
+			return 0;
+		return Math.max((long) (budget * fraction) - getElapsed(), 1);
+	}
+
+	/// Whether the next iteration is expected to finish in time.
+	/**
+	 * The first iteration may always start, as long as there is time left.
+	 */
+	public boolean canStartIteration()
+	{
+		if(budget == 0)
+			return true;
+		final long elapsed = getElapsed();
+		final long available = stableIterations >= STABLE_ITERATIONS ? (long) (budget * STABLE_FRACTION) : budget;
+		if(lastIterationTime == 0)
+			return elapsed < available;
+		final double factor = branchingFactor > 0 ? branchingFactor : DEFAULT_BRANCHING_FACTOR;
+		return elapsed + lastIterationTime * factor <= available;
+	}
+
+	/// Marks the start of an iteration.
+	public void iterationStarted()
+	{
+		iterationStart = System.nanoTime();
+	}
+
+	/// Marks the end of an iteration that ran to completion.
+	/**
+	 * @param bestMove The best move the iteration found.
+	 * @param nodes The number of nodes the search has visited so far, over all its iterations.
+	 */
+	public void iterationFinished(final int bestMove, final long nodes)
+	{
+		lastIterationTime = Math.max(System.nanoTime() - iterationStart, 1);
+		final long iterationNodes = nodes - nodesBefore;
+		nodesBefore = nodes;
+
+		// Successive depths alternate between cheaper and dearer in Connect Four, so the
+		// factor is averaged over the last few iterations.
+		if(lastIterationNodes > 0 && iterationNodes > 0)
+		{
+			final double observed = Math.min(Math.max((double) iterationNodes / lastIterationNodes, 1), 32);
+			branchingFactor = branchingFactor == 0 ? observed : (branchingFactor + observed) / 2;
+		}
+		lastIterationNodes = iterationNodes;
+
+		if(bestMove == lastBestMove)
+			stableIterations++;
+		else
+		{
+			lastBestMove = bestMove;
+			stableIterations = 1;
+		}
+	}
+
+	/// Returns the estimated effective branching factor, or 0 if it has not been measured.
+	public double getBranchingFactor()
+	{
+		return branchingFactor;
+	}
+
+	/// Returns the number of iterations in a row that found the same best move.
+	public int getStableIterations()
+	{
+		return stableIterations;
+	}
+}
@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/// Fixed-size transposition table for game tree searches.
+/**
+ * Remembers the result of searching a position so that transpositions, which are
+ * everywhere in Connect Four, are searched once.  Entries are keyed on
+ * GameStateModule.getPositionKey and hold the search depth, the bound type, the score
+ * and the best move, packed into a data word:
+ *
+ * \code
+ * bits  0-31  score
+ * bits 32-39  best move + 1, or 0 for none
+ * bits 40-47  depth, or SOLVED
+ * bits 48-49  bound type (0 for an empty slot)
+ * bits 50-57  age of the search that stored it
+ * \endcode
+ *
+ * The table is a power-of-two long[] with two words per slot: the key XORed with the
+ * data, then the data.  A probe only accepts a slot if the two words XOR back to the
+ * probed key, so a slot torn by two threads storing at once reads as a miss rather
+ * than as a wrong entry.  This lets several search threads share one table without
+ * any locking.
+ *
+ * A slot is only overwritten by a search at least as deep as the one it holds, whether
+ * or not it is for the same position (depth-preferred replacement), unless the entry
+ * it holds is from an earlier search.  A table kept from one move of a game to the
+ * next calls newSearch before each search, so that the deep entries of old moves,
+ * which are mostly about positions that can no longer occur, give way to new ones
+ * while still answering for the positions that can.
+ *
+ * @see GameStateModule.getPositionKey
+ */
+public final class TranspositionTable
+{
+	/// Bound type of an entry whose score is the exact value of the position.
+	public static final int EXACT = 1;
+	/// Bound type of an entry whose score is a lower bound (the search failed high).
+	public static final int LOWER = 2;
+	/// Bound type of an entry whose score is an upper bound (the search failed low).
+	public static final int UPPER = 3;
+	/// Depth of an entry whose search reached the end of the game on every line.
+	/**
+	 * Such an entry is valid for a search of any depth.
+	 */
+	public static final int SOLVED = 255;
+
+	/// Two words per slot: key ^ data, data.
+	private final long[] table;
+	/// Number of slots - 1.
+	private final int mask;
+	/// Age stored with new entries.
+	private int age;
+
+	/// Constructor.
+	/**
+	 * @param sizeBits Base 2 logarithm of the number of slots.  Each slot takes 16 bytes,
+	 * so 20 gives a table of 16 MiB.
+	 * @throws IllegalArgumentException If sizeBits is not between 1 and 29.
+	 */
+	public TranspositionTable(final int sizeBits)
+	{
+		if(sizeBits < 1 || sizeBits > 29)
+			throw new IllegalArgumentException("Transposition table size must be between 2^1 and 2^29 slots, got 2^" + sizeBits);
+		table = new long[2 << sizeBits];
+		mask = (1 << sizeBits) - 1;
+	}
+
+	/// Returns the number of slots in the table.
+	public int getSize()
+	{
+		return mask + 1;
+	}
+
+	/// Empties the table.
+	public void clear()
+	{
+		Arrays.fill(table, 0L);
+		age = 0;
+	}
+
+	/// Starts a new search, whose entries replace those of earlier searches regardless of depth.
+	/**
+	 * The entries of earlier searches are kept until then and are still returned by probe.
+	 */
+	public void newSearch()
+	{
+		age = (age + 1) & 0xFF;
+	}
+
+	/// Returns the age stored with new entries.
+	public int getAge()
+	{
+		return age;
+	}
+
+	/// Looks up a position.
+	/**
+	 * @param key The position key.
+	 * @return The data word of the entry for the position, or 0 if there is none.  Read
+	 * it with getScore, getMove, getDepth and getBound.
+	 */
+	public long probe(final long key)
+	{
+		final int i = index(key);
+		final long data = table[i + 1];
+		if((table[i] ^ data) != key)
+			return 0;
+		return data;
+	}
+
+	/// Stores the result of searching a position.
+	/**
+	 * @param key The position key.
+	 * @param depth The depth searched, which is clamped to SOLVED.
+	 * @param bound EXACT, LOWER or UPPER.
+	 * @param score The score found.
+	 * @param move The best move found, or -1 for none.  When it is -1, the move of an
+	 * entry already stored for the position is kept.
+	 */
+	public void store(final long key, final int depth, final int bound, final int score, final int move)
+	{
+		final int i = index(key);
+		final long oldData = table[i + 1];
+		final boolean samePosition = (table[i] ^ oldData) == key && oldData != 0;
+		final int clampedDepth = Math.min(Math.max(depth, 0), SOLVED);
+		if(getBound(oldData) != 0 && getAge(oldData) == age && clampedDepth < getDepth(oldData))
+			return;
+
+		long moveBits = move + 1;
+		if(move < 0 && samePosition)
+			moveBits = (oldData >>> 32) & 0xFF;
+		final long data = (score & 0xFFFFFFFFL) | (moveBits & 0xFF) << 32
+			| (long) clampedDepth << 40 | (long) bound << 48 | (long) age << 50;
+		table[i] = key ^ data;
+		table[i + 1] = data;
+	}
+
+	/// The score of a data word returned by probe.
+	public static int getScore(final long data)
+	{
+		return (int) data;
+	}
+
+	/// The best move of a data word returned by probe, or -1 if there is none.
+	public static int getMove(final long data)
+	{
+		return (int) ((data >>> 32) & 0xFF) - 1;
+	}
+
+	/// The depth of a data word returned by probe.
+	public static int getDepth(final long data)
+	{
+		return (int) ((data >>> 40) & 0xFF);
+	}
+
+	/// The bound type of a data word returned by probe, or 0 if the probe missed.
+	public static int getBound(final long data)
+	{
+		return (int) ((data >>> 48) & 0x3);
+	}
+
+	/// The age of a data word returned by probe.
+	public static int getAge(final long data)
+	{
+		return (int) ((data >>> 50) & 0xFF);
+	}
+
+	/// Index of the first word of the slot for a key.
+	private int index(final long key)
+	{
+		// Exact keys only use their low bits, so spread them with a multiplicative hash.
+		return ((int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask) << 1;
+	}
+}
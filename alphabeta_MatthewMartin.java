@@ -1,62 +1,1163 @@
+import java.io.File;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class alphabeta_MatthewMartin extends AIModule
 {
 	// The player we are playing as (1 or 2).
 	private int ourPlayer;
+	// Evaluates positions of states with bitboards, for the board size of the last one evaluated.
+	private BitboardEvaluator bitboardEvaluator;
+	// Counts the lines of states without bitboards, one evaluator per thread that calls eval, reset for each state.
+	private final ThreadLocal<IncrementalEvaluator> lineEvaluators = new ThreadLocal<IncrementalEvaluator>();
+	// The number of coins on the board when getNextMove was called, which tells whose turn a state is.
+	private int rootCoins;
+	
+	// True to search a single state in place with negamax (see Searcher), false to build a TreeNode tree.
+	public boolean inPlaceSearch = true;
+	// True to let the in-place search remember positions in a transposition table.
+	public boolean useTranspositionTable = true;
+	// Base 2 logarithm of the number of transposition table slots (16 bytes each).
+	public int transpositionTableBits = 20;
+	
+	// Move ordering below the root: ORDER_EVAL sorts the children by eval, ORDER_KILLER_HISTORY by the
+	// killer moves and history table, which never looks at the children.
+	public static final int ORDER_EVAL = 0;
+	public static final int ORDER_KILLER_HISTORY = 1;
+	public int moveOrdering = ORDER_KILLER_HISTORY;
+	// True to search every move but the first of a node with a null window first (principal variation search).
+	public boolean principalVariationSearch = true;
+	// Half the width of the aspiration window each iteration starts with around the score of the previous
+	// one, in eval units. 0 always searches the root with a full window.
+	public int aspirationWindow = 8;
+	
+	// The number of threads running the in-place search (Lazy SMP). Every thread past the first runs its
+	// own iterative deepening on a copy of the state, at staggered depths, and only helps the first one by
+	// filling the shared transposition table. Needs useTranspositionTable.
+	public int threads = 1;
+	
+	// True to run the in-place search as a Young Brothers Wait search on a ForkJoinPool of threads threads
+	// instead. It does not use the transposition table, so its results do not depend on thread timing. Its
+	// speedup should be measured against the in-place search with useTranspositionTable false.
+	public boolean youngBrothersWait = false;
+	// True to stop searching the siblings of a Young Brothers Wait split as soon as one of them causes a
+	// beta cutoff. False searches all of them, which wastes work but makes node counts reproducible.
+	public boolean abortSiblingsOnCutoff = true;
+	// Nodes with less depth left than this are searched serially by the Young Brothers Wait search.
+	public int splitDepth = 5;
+	
+	// The pool running the Young Brothers Wait search, created on first use.
+	private ForkJoinPool pool;
+	
+	// The deepest iteration of the in-place search, for searches that should not depend on time.
+	public int maxDepth = Integer.MAX_VALUE;
+	// The score of chosenMove from our point of view, on the scale of eval, as far as the search got. 0 when the
+	// move was played without a search.
+	public int chosenScore = 0;
+	// True to play the only legal move without searching it. False searches it anyway, for its chosenScore.
+	public boolean playForcedMovesAtOnce = true;
+	
+	// The opening book to play from while it knows the position, or null for none. A missing file is ignored.
+	// There is no book by default, so that games do not depend on the directory they are started from; Main
+	// sets one with -book.
+	public String openingBookFile = null;
+	// The opening book, once openingBookFile has been opened.
+	private OpeningBook openingBook;
+	private String openingBookOpened;
+	
+	// Solve the game exactly with an EndgameSolver once this many tiles or fewer are empty. -1 works the number
+	// out from timeLimit.
+	public int endgameEmptyTiles = -1;
+	// The fraction of the time the endgame solver may use before giving up.
+	private static final double ENDGAME_TIME_FRACTION = 0.5;
+	// Base 2 logarithm of the number of slots of the endgame solver's transposition table.
+	public int endgameTableBits = 20;
+	
+	// The endgame solver, created on first use. Its table is kept from move to move, since solved positions
+	// stay solved.
+	private EndgameSolver endgameSolver;
+	
+	// Set once the in-place search is over, so that helper threads stop along with the main one.
+	private volatile boolean stopSearch;
+	
+	// Decides which iterations there is time for, from timeLimit.
+	private final TimeManager timeManager = new TimeManager();
+	// Searches only read terminate and the clock once every this many nodes.
+	private static final int POLL_INTERVAL = 1024;
+	// The number of nodes expanded by the current tree search, and its poll state (see treeStopped).
+	private long treeNodes;
+	private boolean treeHalted;
+	private long treeNextPoll;
+	
+	// The fraction of beta cutoffs that came from the first move searched, in the last in-place search.
+	public double firstMoveCutoffRate = 0;
+	// True to print search statistics to System.err after every in-place search.
+	public boolean printStatistics = false;
+	
+	// True to keep the transposition table from one move to the next within a game, so that each search
+	// starts with what the last one found out about the positions still ahead. False empties it before
+	// every search that does not follow pondering.
+	public boolean keepTableBetweenMoves = true;
+	
+	// The transposition table, created on first use, aged before every search and emptied for a new game.
+	private TranspositionTable table;
+	// True once ponder has filled the table for the next search.
+	private boolean keepTable;
+	// The state and player of the last search that filled the table, to tell whether a search is in the same game.
+	private GameStateModule lastRoot;
+	private int lastPlayer;
+	
+	// True to ponder only on the reply the last search expected the opponent to play, false to ponder on
+	// every reply. A right guess searches deeper, a wrong one wastes the opponent's turn.
+	public boolean ponderPredictedReply = false;
+	// The opponent's reply on the principal variation of the last search, or -1.
+	private int predictedReply = -1;
 	
 	public class TreeNode
 	{
-		// The current game state.
-		public GameStateModule state;
-		// The node's children.
-		public TreeNode[] children;
-		// The parent node.
-		public TreeNode parent;
-		// The current best found Nash Equilibrium.
-		public int v;
-		// Which child produced the current v value.
-		public int vFrom;
-		// This node's evaluation value (estimation of Nash Equlilbrium).
-		public int eval;
-		// True iff this is a max node.
-		public boolean max;
-		// The tree level of this node.
-		public int level;
-		// The current best move found.
-		public int move;
-		// The lowest level expanded.
-		public int lowestLevel;
+		// The current game state.
+		public GameStateModule state;
+		// The node's children.
+		public TreeNode[] children;
+		// The parent node.
+		public TreeNode parent;
+		// The current best found Nash Equilibrium.
+		public int v;
+		// Which child produced the current v value.
+		public int vFrom;
+		// This node's evaluation value (estimation of Nash Equlilbrium).
+		public int eval;
+		// True iff this is a max node.
+		public boolean max;
+		// The tree level of this node.
+		public int level;
+		// The current best move found.
+		public int move;
+		// The lowest level expanded.
+		public int lowestLevel;
+		
+		// Alpha/beta values. Used for alpha-beta pruning.
+		public int alpha;
+		public int beta;
+		
+		// Generic constructor.
+		public TreeNode(GameStateModule _state, TreeNode _parent)
+		{
+			children = null;
+			state = _state;
+			parent = _parent;
+			v = 0;
+			vFrom = -99;
+			eval = 0;
+			max = false;
+			level = 0;
+			move = -99;
+			lowestLevel = 0;
+			
+			alpha = Integer.MIN_VALUE;
+			beta = Integer.MAX_VALUE;
+		}
+	}
+	
+	// Searches a single state in place with negamax alpha-beta.
+	// Children are visited with makeMove/unMakeMove on the one state, the move lists live in buffers
+	// allocated up front and positions are evaluated by an IncrementalEvaluator that follows the moves,
+	// so a search allocates nothing per node.
+	public class Searcher
+	{
+		// The state being searched. Every makeMove is undone before the search returns.
+		private final GameStateModule state;
+		// Move buffer for each ply.
+		private final int[][] moves;
+		// Ordering scores matching the move buffers.
+		private final int[][] scores;
+		// Triangular principal variation table: pvTable[ply] holds the best line found from ply onward,
+		// in pvTable[ply][ply] to pvTable[ply][pvLength[ply] - 1].
+		private final int[][] pvTable;
+		private final int[] pvLength;
+		// The number of root moves, kept in moves[0] from one iteration to the next (0 until the first).
+		private int rootCount;
+		// True while the search is still on the principal variation of the previous iteration.
+		private boolean followPv;
+		
+		// The principal variation found by the last completed search, starting with bestMove.
+		public int[] principalVariation;
+		
+		// ORDER_EVAL or ORDER_KILLER_HISTORY.
+		private final int ordering;
+		// The two most recent moves that caused a beta cutoff at each ply (-1 for none).
+		private final int[][] killers;
+		// For each tile (x * height + y), how much cutoffs by a coin dropped there have been worth.
+		private final int[] history;
+		// The columns from the center outward, which breaks ties between moves with equal history.
+		private final int[] columnOrder;
+		// The number of beta cutoffs, and how many of them came from the first move searched.
+		public long cutoffs;
+		public long firstMoveCutoffs;
+		
+		// The best root move and its score (from our point of view) found by the last completed search.
+		public int bestMove;
+		public int bestScore;
+		// True iff the last search stopped some line because of the depth limit rather than the end of the game.
+		public boolean hitDepthLimit;
+		// The number of nodes visited so far.
+		public long nodes;
+		// The number of nodes answered by the transposition table.
+		public long tableHits;
+		
+		// The transposition table, or null to search without one.
+		private final TranspositionTable table;
+		// The Young Brothers Wait split this search is part of, or null.
+		private final Split split;
+		// Whether ply 0 of this search is our turn (0) or the opponent's (1).
+		private final int plyOffset;
+		// Evaluates the state, kept up to date by play and undo.
+		private final IncrementalEvaluator evaluator;
+		// Set once terminate, stopSearch or the clock said to stop, and the node count at which to look again.
+		private boolean halted;
+		private long nextPoll;
+		
+		// Generic constructor.
+		public Searcher(GameStateModule _state)
+		{
+			this(_state, alphabeta_MatthewMartin.this.table, null);
+		}
+		
+		// Constructor for a search with its own transposition table (or none), that also stops when the passed
+		// split is aborted.
+		public Searcher(GameStateModule _state, TranspositionTable _table, Split _split)
+		{
+			state = _state;
+			table = _table;
+			split = _split;
+			plyOffset = (state.getCoins() - rootCoins) & 1;
+			evaluator = new IncrementalEvaluator(state);
+			int maxPly = state.getWidth() * state.getHeight() - state.getCoins() + 1;
+			moves = new int[maxPly][state.getWidth()];
+			scores = new int[maxPly][state.getWidth()];
+			pvTable = new int[maxPly + 1][maxPly + 1];
+			pvLength = new int[maxPly + 1];
+			rootCount = 0;
+			followPv = false;
+			principalVariation = new int[0];
+			
+			ordering = moveOrdering;
+			killers = new int[maxPly + 1][2];
+			for (int[] plyKillers : killers)
+			{
+				plyKillers[0] = -1;
+				plyKillers[1] = -1;
+			}
+			history = new int[state.getWidth() * state.getHeight()];
+			columnOrder = new int[state.getWidth()];
+			int n = 0;
+			for (int distance = 0; n < columnOrder.length; distance++)
+			{
+				// Columns by increasing distance from the center, left before right.
+				for (int x = 0; x < columnOrder.length; x++)
+				{
+					if (Math.abs(2 * x - (columnOrder.length - 1)) == distance) columnOrder[n++] = x;
+				}
+			}
+			cutoffs = 0;
+			firstMoveCutoffs = 0;
+			bestMove = -1;
+			bestScore = 0;
+			hitDepthLimit = false;
+			nodes = 0;
+			tableHits = 0;
+			halted = false;
+			nextPoll = 0;
+		}
+		
+		// Searches the root to the passed depth. Returns false if the search was terminated, in which case
+		// bestMove and bestScore are left as they were.
+		// After the first search, the root is searched with an aspiration window around the previous score,
+		// which is widened on the failing side until the score falls inside it.
+		public boolean searchRoot(int depth)
+		{
+			int alpha = -Integer.MAX_VALUE;
+			int beta = Integer.MAX_VALUE;
+			int delta = aspirationWindow;
+			boolean decided = Math.abs(bestScore) >= Integer.MAX_VALUE - state.getWidth() * state.getHeight();
+			if (delta > 0 && bestMove != -1 && !decided)
+			{
+				alpha = bestScore - delta;
+				beta = bestScore + delta;
+			}
+			
+			while (true)
+			{
+				int v = searchWindow(depth, alpha, beta);
+				if (stopped()) return false;
+				
+				delta *= 4;
+				if (v <= alpha && alpha != -Integer.MAX_VALUE)
+				{
+					alpha = (int) Math.max(-Integer.MAX_VALUE, (long) v - delta);
+				}
+				else if (v >= beta && beta != Integer.MAX_VALUE)
+				{
+					beta = (int) Math.min(Integer.MAX_VALUE, (long) v + delta);
+				}
+				else
+				{
+					return true;
+				}
+			}
+		}
+		
+		// Searches the root to the passed depth within the passed window and returns its score. bestMove,
+		// bestScore and principalVariation are only updated if the score is inside the window.
+		// Each search starts down the principal variation of the previous one, and tries the root moves in
+		// the order of the scores they got last time.
+		private int searchWindow(int depth, int alphaIn, int beta)
+		{
+			hitDepthLimit = false;
+			pvLength[0] = 0;
+			if (rootCount == 0) rootCount = orderMoves(0, -1);
+			followPv = principalVariation.length > 1;
+			
+			int[] rootMoves = moves[0];
+			int[] rootScores = scores[0];
+			int alpha = alphaIn;
+			int best = -Integer.MAX_VALUE;
+			int move = -1;
+			for (int i = 0; i < rootCount; i++)
+			{
+				play(rootMoves[i]);
+				int v = searchChild(depth, 0, i, alpha, beta);
+				undo();
+				if (stopped()) return 0;
+				followPv = false;
+				
+				// Only the best move gets an exact score, the others an upper bound, which is still good enough
+				// to order them by.
+				rootScores[i] = v;
+				if (move == -1 || v > best)
+				{
+					best = v;
+					move = rootMoves[i];
+				}
+				if (best > alpha)
+				{
+					alpha = best;
+					updatePv(0, move);
+				}
+				if (alpha >= beta) break;
+			}
+			
+			// Insertion sort the root moves, decreasing by score, for the next iteration. This is stable, so
+			// moves with equal scores keep their order.
+			for (int i = 1; i < rootCount; i++)
+			{
+				int m = rootMoves[i];
+				int v = rootScores[i];
+				int j = i;
+				while (j > 0 && rootScores[j - 1] < v)
+				{
+					rootMoves[j] = rootMoves[j - 1];
+					rootScores[j] = rootScores[j - 1];
+					j--;
+				}
+				rootMoves[j] = m;
+				rootScores[j] = v;
+			}
+			
+			if (best <= alphaIn || best >= beta) return best;
+			
+			principalVariation = new int[pvLength[0]];
+			System.arraycopy(pvTable[0], 0, principalVariation, 0, pvLength[0]);
+			bestMove = move;
+			bestScore = best;
+			if (table != null)
+			{
+				table.store(state.getPositionKey(), hitDepthLimit ? depth : TranspositionTable.SOLVED,
+						TranspositionTable.EXACT, best, move);
+			}
+			return best;
+		}
+		
+		// Returns the value of the child just played, the index-th move of the passed ply, from the point of
+		// view of the player to move at the ply. With principal variation search, every child but the first is
+		// probed with a null window first, and only searched with the full window if it beats alpha.
+		private int searchChild(int depth, int ply, int index, int alpha, int beta)
+		{
+			if (index == 0 || !principalVariationSearch || beta - alpha <= 1)
+			{
+				return -negamax(depth - 1, ply + 1, -beta, -alpha);
+			}
+			int v = -negamax(depth - 1, ply + 1, -alpha - 1, -alpha);
+			if (v > alpha && v < beta && !stopped())
+			{
+				v = -negamax(depth - 1, ply + 1, -beta, -alpha);
+			}
+			return v;
+		}
+		
+		// Returns the value of the state from the point of view of the player to move, searching depth more plies.
+		private int negamax(int depth, int ply, int alpha, int beta)
+		{
+			nodes++;
+			pvLength[ply] = ply;
+			if (stopped()) return 0;
+			if (state.isGameOver() || depth == 0)
+			{
+				if (!state.isGameOver()) hitDepthLimit = true;
+				return sideToMove(ply) * evaluate();
+			}
+			
+			// Look the position up. An entry that did not reach the end of the game on every line only
+			// answers searches that are no deeper than it was, and still counts as hitting the depth limit.
+			long key = 0;
+			int tableMove = -1;
+			if (table != null)
+			{
+				key = state.getPositionKey();
+				long entry = table.probe(key);
+				int bound = TranspositionTable.getBound(entry);
+				int entryDepth = TranspositionTable.getDepth(entry);
+				if (bound != 0 && entryDepth >= depth)
+				{
+					int score = TranspositionTable.getScore(entry);
+					if (bound == TranspositionTable.EXACT
+							|| (bound == TranspositionTable.LOWER && score >= beta)
+							|| (bound == TranspositionTable.UPPER && score <= alpha))
+					{
+						if (entryDepth != TranspositionTable.SOLVED) hitDepthLimit = true;
+						tableHits++;
+						return score;
+					}
+				}
+				tableMove = TranspositionTable.getMove(entry);
+			}
+			
+			// Track whether this subtree hits the depth limit separately from the rest of the search.
+			boolean outerHitDepthLimit = hitDepthLimit;
+			hitDepthLimit = false;
+			
+			// On the previous principal variation, its move comes first. Only its first child stays on it.
+			boolean onPv = followPv && ply < principalVariation.length;
+			followPv = onPv;
+			
+			int alphaIn = alpha;
+			int count = orderMoves(ply, onPv ? principalVariation[ply] : tableMove);
+			int best = -Integer.MAX_VALUE;
+			int bestMoveHere = -1;
+			for (int i = 0; i < count; i++)
+			{
+				play(moves[ply][i]);
+				int v = searchChild(depth, ply, i, alpha, beta);
+				undo();
+				if (stopped()) return 0;
+				followPv = false;
+				
+				if (v > best)
+				{
+					best = v;
+					bestMoveHere = moves[ply][i];
+				}
+				if (best > alpha)
+				{
+					alpha = best;
+					updatePv(ply, bestMoveHere);
+				}
+				if (alpha >= beta)
+				{
+					recordCutoff(ply, depth, bestMoveHere, i);
+					break;
+				}
+			}
+			
+			if (table != null)
+			{
+				int bound = best <= alphaIn ? TranspositionTable.UPPER
+						: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+				table.store(key, hitDepthLimit ? depth : TranspositionTable.SOLVED, bound, best, bestMoveHere);
+			}
+			hitDepthLimit |= outerHitDepthLimit;
+			return best;
+		}
+		
+		// Counts a beta cutoff caused by the passed move, the index-th one searched, and remembers the move
+		// as a killer and in the history table.
+		private void recordCutoff(int ply, int depth, int move, int index)
+		{
+			cutoffs++;
+			if (index == 0) firstMoveCutoffs++;
+			if (ordering != ORDER_KILLER_HISTORY) return;
+			
+			if (killers[ply][0] != move)
+			{
+				killers[ply][1] = killers[ply][0];
+				killers[ply][0] = move;
+			}
+			
+			int tile = move * state.getHeight() + state.getHeightAt(move);
+			history[tile] += depth * depth;
+			if (history[tile] > (1 << 24))
+			{
+				// Keep the counts well away from overflowing, without changing their order.
+				for (int i = 0; i < history.length; i++) history[i] >>= 1;
+			}
+		}
+		
+		// Returns the fraction of beta cutoffs that came from the first move searched.
+		public double getFirstMoveCutoffRate()
+		{
+			return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+		}
+		
+		// Makes the passed move followed by the principal variation of the next ply the principal variation
+		// of the passed ply.
+		private void updatePv(int ply, int move)
+		{
+			pvTable[ply][ply] = move;
+			System.arraycopy(pvTable[ply + 1], ply + 1, pvTable[ply], ply + 1, pvLength[ply + 1] - (ply + 1));
+			pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+		}
+		
+		// Fills the move buffer of the passed ply with the legal moves, best first, and returns how many there
+		// are. The root is always sorted by eval (as getMovesEvalOrdered does), other plies as ordering says.
+		// The passed first move, if legal, goes in front regardless of its score.
+		private int orderMoves(int ply, int firstMove)
+		{
+			int[] plyMoves = moves[ply];
+			int[] plyScores = scores[ply];
+			int sign = sideToMove(ply);
+			boolean useEval = ordering == ORDER_EVAL || ply == 0;
+			int count = 0;
+			int legal = state.getLegalMoves();
+			for (int c = 0; c < columnOrder.length; c++)
+			{
+				int x = columnOrder[c];
+				if ((legal & (1 << x)) == 0) continue;
+				
+				int score;
+				if (useEval)
+				{
+					play(x);
+					score = sign * evaluate();
+					undo();
+				}
+				else if (x == killers[ply][0])
+				{
+					score = Integer.MAX_VALUE;
+				}
+				else if (x == killers[ply][1])
+				{
+					score = Integer.MAX_VALUE - 1;
+				}
+				else
+				{
+					score = history[x * state.getHeight() + state.getHeightAt(x)];
+				}
+				
+				// Insertion sort, decreasing by score.
+				int i = count++;
+				while (i > 0 && plyScores[i - 1] < score)
+				{
+					plyMoves[i] = plyMoves[i - 1];
+					plyScores[i] = plyScores[i - 1];
+					i--;
+				}
+				plyMoves[i] = x;
+				plyScores[i] = score;
+			}
+			
+			for (int i = 1; i < count; i++)
+			{
+				if (plyMoves[i] == firstMove)
+				{
+					int firstScore = plyScores[i];
+					for (int j = i; j > 0; j--)
+					{
+						plyMoves[j] = plyMoves[j - 1];
+						plyScores[j] = plyScores[j - 1];
+					}
+					plyMoves[0] = firstMove;
+					plyScores[0] = firstScore;
+					break;
+				}
+			}
+			return count;
+		}
+		
+		// Returns the value of the state from the point of view of the player to move, searching depth more plies.
+		public int searchSubtree(int depth, int alpha, int beta)
+		{
+			return negamax(depth, 0, alpha, beta);
+		}
+		
+		// Drops a coin in the passed column, for the state and the evaluator.
+		private void play(int x)
+		{
+			int y = state.getHeightAt(x);
+			int player = state.getActivePlayer();
+			state.makeMove(x);
+			evaluator.play(x, y, player);
+		}
+		
+		// Takes back the last coin played.
+		private void undo()
+		{
+			state.unMakeMove();
+			evaluator.undo();
+		}
+		
+		// Returns the evaluation of the state from our point of view, as eval does.
+		private int evaluate()
+		{
+			if (state.isGameOver()) return eval(state);
+			return evaluator.evaluate(ourPlayer);
+		}
+		
+		// Returns whether the search should stop. terminate, stopSearch and the clock are only read every
+		// POLL_INTERVAL nodes, and once one of them says to stop, the search stays stopped.
+		private boolean stopped()
+		{
+			if (!halted && nodes >= nextPoll)
+			{
+				nextPoll = nodes + POLL_INTERVAL;
+				halted = terminate || stopSearch || timeManager.isOutOfTime();
+			}
+			return halted || (split != null && split.isAborted());
+		}
+		
+		// Returns 1 if we are to move at the passed ply, -1 if the opponent is.
+		private int sideToMove(int ply)
+		{
+			return ((ply + plyOffset) & 1) == 0 ? 1 : -1;
+		}
+	}
+	
+	// The siblings searched in parallel at one node of the Young Brothers Wait search.
+	public class Split
+	{
+		// The split of the node above, or null at the root.
+		private final Split parent;
+		// Set when one of the siblings caused a beta cutoff, so the others can stop.
+		private volatile boolean aborted;
+		
+		// Generic constructor.
+		public Split(Split _parent)
+		{
+			parent = _parent;
+			aborted = false;
+		}
+		
+		// Returns whether this split or any split above it has been aborted.
+		public boolean isAborted()
+		{
+			for (Split s = this; s != null; s = s.parent)
+			{
+				if (s.aborted) return true;
+			}
+			return false;
+		}
+	}
+	
+	// Young Brothers Wait search of one node, on a state of its own.
+	// The first child of a node is searched before its younger brothers, which are then searched in parallel
+	// as tasks of their own with the window the first child left. Nodes with less than splitDepth plies left
+	// are searched serially by a Searcher without a transposition table.
+	public class YbwcTask extends RecursiveTask<Integer>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		// The state to search. It belongs to this task, and every makeMove is undone before the task ends.
+		private final GameStateModule state;
+		private final int depth;
+		private final int alpha;
+		private final int beta;
+		// The split this task is a sibling of, or null for the root.
+		private final Split split;
+		// The move to search first at the top node, or -1.
+		private final int firstMove;
+		// The moves and their ordering scores at each ply below the top node that is split here, allocated
+		// once per task. Younger brothers are tasks of their own, so each ply only needs one buffer.
+		private int[][] plyMoves;
+		private int[][] plyScores;
+		
+		// The best move at the top node.
+		public int bestMove;
+		// True iff some line was cut off by the depth limit.
+		public boolean hitDepthLimit;
+		// The number of nodes visited, including those of the tasks split off.
+		public long nodes;
+		// True iff the task ran to the end without being stopped, so its result can be used.
+		public boolean valid;
+		
+		// Generic constructor.
+		public YbwcTask(GameStateModule _state, int _depth, int _alpha, int _beta, Split _split, int _firstMove)
+		{
+			state = _state;
+			depth = _depth;
+			alpha = _alpha;
+			beta = _beta;
+			split = _split;
+			firstMove = _firstMove;
+			bestMove = -1;
+			hitDepthLimit = false;
+			nodes = 0;
+			valid = false;
+		}
+		
+		// Returns the value of the state from the point of view of the player to move.
+		@Override
+		protected Integer compute()
+		{
+			int v = search(depth, alpha, beta, true);
+			valid = !stopped();
+			
+			// A value this low makes the parent cut off, so the other siblings are wasted work.
+			if (valid && v <= alpha && split != null && abortSiblingsOnCutoff) split.aborted = true;
+			return v;
+		}
+		
+		// Returns the value of the state from the point of view of the player to move, searching depth more
+		// plies.
+		private int search(int depth, int alpha, int beta, boolean top)
+		{
+			if (depth < splitDepth || state.isGameOver())
+			{
+				Searcher searcher = new Searcher(state, null, split);
+				int v;
+				if (top && !state.isGameOver())
+				{
+					// The top node needs its best move too, which only a root search keeps. The root is always
+					// searched with the full window, and is our turn.
+					if (!searcher.searchRoot(depth)) v = 0;
+					else v = searcher.bestScore;
+					bestMove = searcher.bestMove;
+				}
+				else
+				{
+					v = searcher.searchSubtree(depth, alpha, beta);
+				}
+				nodes += searcher.nodes;
+				hitDepthLimit |= searcher.hitDepthLimit;
+				return v;
+			}
+			nodes++;
+			
+			// Order the moves by eval, with the passed first move in front.
+			int sign = ((state.getCoins() - rootCoins) & 1) == 0 ? 1 : -1;
+			if (plyMoves == null)
+			{
+				plyMoves = new int[this.depth - splitDepth + 1][state.getWidth()];
+				plyScores = new int[this.depth - splitDepth + 1][state.getWidth()];
+			}
+			int[] moves = plyMoves[this.depth - depth];
+			int[] scores = plyScores[this.depth - depth];
+			int count = 0;
+			int legal = state.getLegalMoves();
+			for (int x = 0; x < state.getWidth(); x++)
+			{
+				if ((legal & (1 << x)) == 0) continue;
+				
+				state.makeMove(x);
+				int score = x == firstMove && top ? Integer.MAX_VALUE : sign * eval(state);
+				state.unMakeMove();
+				
+				// Insertion sort, decreasing by score.
+				int i = count++;
+				while (i > 0 && scores[i - 1] < score)
+				{
+					moves[i] = moves[i - 1];
+					scores[i] = scores[i - 1];
+					i--;
+				}
+				moves[i] = x;
+				scores[i] = score;
+			}
+			
+			// The eldest brother first.
+			state.makeMove(moves[0]);
+			int best = -search(depth - 1, -beta, -alpha, false);
+			state.unMakeMove();
+			if (stopped()) return 0;
+			if (top) bestMove = moves[0];
+			if (best > alpha) alpha = best;
+			if (alpha >= beta || count == 1) return best;
+			
+			// Then the younger brothers, all with the window the eldest one left.
+			Split children = new Split(split);
+			YbwcTask[] tasks = new YbwcTask[count - 1];
+			for (int i = 1; i < count; i++)
+			{
+				GameStateModule child = state.copy();
+				child.makeMove(moves[i]);
+				tasks[i - 1] = new YbwcTask(child, depth - 1, -beta, -alpha, children, -1);
+			}
+			invokeAll(tasks);
+			if (stopped()) return 0;
+			
+			for (int i = 0; i < tasks.length; i++)
+			{
+				nodes += tasks[i].nodes;
+				hitDepthLimit |= tasks[i].hitDepthLimit;
+				
+				// Siblings stopped by a cutoff of another one have no usable value.
+				if (!tasks[i].valid) continue;
+				int v = -tasks[i].join();
+				if (v > best)
+				{
+					best = v;
+					if (top) bestMove = moves[i + 1];
+				}
+			}
+			return best;
+		}
+		
+		// Returns whether the task should stop. This reads the clock, but only a few times per node of at least
+		// splitDepth plies, of which there are few.
+		private boolean stopped()
+		{
+			return terminate || stopSearch || timeManager.isOutOfTime() || (split != null && split.isAborted());
+		}
+	}
+	
+	// Sets the next move to be made by the AI (by setting chosenMove).
+	@Override
+	public void getNextMove(final GameStateModule state)
+	{
+		ourPlayer = state.getActivePlayer();
+		rootCoins = state.getCoins();
+		predictedReply = -1;
+		timeManager.start(timeLimit);
+		if (playForcedMovesAtOnce && playForcedMove(state)) return;
+		if (playFromBook(state)) return;
+		if (solveEndgame(state)) return;
+		if (inPlaceSearch && youngBrothersWait)
+		{
+			searchYoungBrothersWait(state);
+		}
+		else if (inPlaceSearch)
+		{
+			searchInPlace(state);
+		}
+		else
+		{
+			searchTree(state);
+		}
+	}
+	
+	// Searches the passed state, with the opponent to move, until terminate is set, so that the next
+	// getNextMove starts with a filled transposition table. Near the end of the game, solves the replies with
+	// the endgame solver instead, whose table is always kept.
+	@Override
+	public void ponder(final GameStateModule state)
+	{
+		if (state.isGameOver()) return;
+		
+		// Search as ourselves, with the opponent to move, so that the table holds the scores our next search
+		// would store.
+		ourPlayer = 3 - state.getActivePlayer();
+		rootCoins = state.getCoins() - 1;
+		// Pondering only ends with terminate.
+		timeManager.start(0);
+		
+		int width = state.getWidth();
+		int height = state.getHeight();
+		if (EndgameSolver.fits(width, height) && width * height - state.getCoins() - 1 <= getEndgameEmptyTiles(width))
+		{
+			if (endgameSolver == null || endgameSolver.getWidth() != width || endgameSolver.getHeight() != height)
+			{
+				endgameSolver = new EndgameSolver(width, height, endgameTableBits);
+			}
+			endgameSolver.solve(state, this);
+			return;
+		}
+		if (!inPlaceSearch || youngBrothersWait || !useTranspositionTable) return;
+		
+		if (ponderPredictedReply && predictedReply != -1 && state.canMakeMove(predictedReply))
+		{
+			state.makeMove(predictedReply);
+			rootCoins = state.getCoins();
+			if (state.isGameOver()) return;
+		}
+		searchInPlace(state, true);
+		keepTable = true;
+	}
+	
+	// Sets chosenMove if only one move is legal, and chosenScore to 0, since the move was not searched. Returns
+	// true if it did.
+	public boolean playForcedMove(final GameStateModule state)
+	{
+		int legal = state.getLegalMoves();
+		if (Integer.bitCount(legal) != 1) return false;
+		chosenMove = Integer.numberOfTrailingZeros(legal);
+		chosenScore = 0;
+		return true;
+	}
+	
+	// Returns whether the passed score is a win or loss found by the search, which no deeper search will change.
+	private boolean isDecided(final GameStateModule state, int score)
+	{
+		return Math.abs((long) score) >= Integer.MAX_VALUE - state.getWidth() * state.getHeight();
+	}
+	
+	// Sets chosenMove from the opening book if it holds the passed state. Returns true if it did.
+	public boolean playFromBook(final GameStateModule state)
+	{
+		if (openingBookFile == null) return false;
+		if (!openingBookFile.equals(openingBookOpened))
+		{
+			// Only try each file once, whether or not it opens.
+			openingBookOpened = openingBookFile;
+			openingBook = null;
+			File file = new File(openingBookFile);
+			if (file.exists())
+			{
+				try
+				{
+					openingBook = OpeningBook.open(file);
+				}
+				catch (IOException e)
+				{
+					System.err.println("Could not open the opening book: " + e.getMessage());
+				}
+			}
+		}
+		if (openingBook == null) return false;
+		
+		int move = openingBook.findMove(state);
+		if (move < 0 || !state.canMakeMove(move)) return false;
+		chosenMove = move;
+		chosenScore = openingBook.findScore(state);
+		return true;
+	}
+	
+	// Returns the number of empty tiles at which to switch to the endgame solver on a board of the passed width.
+	// Measured on 7x6 games, the slowest solves take about 10 ms with 24 empty tiles and grow by a factor of
+	// 1.8 per extra tile, so this picks the largest number that stays within a quarter of the time limit.
+	// Wider boards have more moves per tile, so the number shrinks in proportion to the width.
+	public int getEndgameEmptyTiles(int width)
+	{
+		if (endgameEmptyTiles >= 0) return endgameEmptyTiles;
+		int budget = (timeLimit > 0 ? timeLimit : 500) / 4;
+		double tiles = 24 + Math.floor(Math.log(budget / 10.0) / Math.log(1.8));
+		return Math.max(0, (int) (tiles * 7 / width));
+	}
+	
+	// Solves the passed state and sets chosenMove if few enough tiles are empty. Returns true if it did, false
+	// if the state was left to the heuristic search.
+	public boolean solveEndgame(final GameStateModule state)
+	{
+		int width = state.getWidth();
+		int height = state.getHeight();
+		if (!EndgameSolver.fits(width, height)) return false;
+		if (width * height - state.getCoins() > getEndgameEmptyTiles(width)) return false;
+		
+		if (endgameSolver == null || endgameSolver.getWidth() != width || endgameSolver.getHeight() != height)
+		{
+			endgameSolver = new EndgameSolver(width, height, endgameTableBits);
+		}
+		// Leave at least half the time to the heuristic search, in case the solve does not finish.
+		int score = endgameSolver.solve(state, this, timeManager.getRemaining(ENDGAME_TIME_FRACTION));
+		
+		// If time ran out, the heuristic search picks a fallback move.
+		if (endgameSolver.wasStopped()) return false;
+		chosenMove = endgameSolver.getBestMove();
+		
+		// The solver counts how early the game ends, eval how many coins are on the board by then.
+		int endCoins = width * height + 2 - 2 * Math.abs(score);
+		chosenScore = score > 0 ? Integer.MAX_VALUE - endCoins : score < 0 ? Integer.MIN_VALUE + endCoins : 0;
+		if (printStatistics)
+		{
+			System.err.println("Solved with " + (width * height - state.getCoins()) + " empty tiles: score " + score
+					+ ", " + endgameSolver.getNodes() + " nodes");
+		}
+		return true;
+	}
+	
+	// Iterative deepening over a Searcher working on the passed state in place.
+	public void searchInPlace(final GameStateModule state)
+	{
+		searchInPlace(state, false);
+	}
+	
+	// Iterative deepening over a Searcher working on the passed state in place. When pondering, chosenMove and
+	// chosenScore are left alone and only the transposition table is of use afterwards.
+	private void searchInPlace(final GameStateModule state, boolean pondering)
+	{
+		if (useTranspositionTable)
+		{
+			if (table == null || table.getSize() != 1 << transpositionTableBits)
+			{
+				table = new TranspositionTable(transpositionTableBits);
+			}
+			else if (!keepTable && (!isSameGame(state) || !keepTableBetweenMoves))
+			{
+				table.clear();
+			}
+			else
+			{
+				table.newSearch();
+			}
+			lastRoot = state.copy();
+			lastPlayer = ourPlayer;
+		}
+		else
+		{
+			table = null;
+		}
+		keepTable = false;
+		stopSearch = false;
+		Searcher searcher = new Searcher(state);
+		
+		// Fall back on the most promising move in case not even the first iteration completes.
+		searcher.orderMoves(0, -1);
+		if (!pondering) chosenMove = searcher.moves[0][0];
+		
+		// Start the helpers. Odd ones start one ply deeper, so that the threads are spread over two depths. Like
+		// the main search, they go no deeper than maxDepth.
+		int helperCount = table == null ? 0 : threads - 1;
+		Thread[] helpers = new Thread[Math.max(helperCount, 0)];
+		final Searcher[] helperSearchers = new Searcher[helpers.length];
+		for (int i = 0; i < helpers.length; i++)
+		{
+			final Searcher helper = new Searcher(state.copy());
+			final int startLevel = Math.min(4 + ((i + 1) & 1), maxDepth);
+			helperSearchers[i] = helper;
+			helpers[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int level = startLevel; level <= maxDepth && helper.searchRoot(level) && helper.hitDepthLimit; level++)
+					{
+					}
+				}
+			};
+			helpers[i].setDaemon(true);
+			helpers[i].start();
+		}
+		
+		int currLevel = Math.min(4, maxDepth);
+		while (true)
+		{
+			// If we run out of time at any point, exit (the last chosen value will be used). Do not start an
+			// iteration that is not expected to finish in time, since it would be thrown away.
+			if (terminate || !timeManager.canStartIteration()) break;
+			timeManager.iterationStarted();
+			if (!searcher.searchRoot(currLevel)) break;
+			timeManager.iterationFinished(searcher.bestMove, searcher.nodes);
+			if (!pondering)
+			{
+				chosenMove = searcher.bestMove;
+				chosenScore = searcher.bestScore;
+				predictedReply = searcher.principalVariation.length > 1 ? searcher.principalVariation[1] : -1;
+			}
+			
+			// If no line was cut off by the depth limit, then the whole game tree has been searched.
+			if (!searcher.hitDepthLimit) break;
+			if (currLevel >= maxDepth) break;
+			if (isDecided(state, searcher.bestScore)) break;
+			
+			currLevel++;
+		}
+		
+		stopSearch = true;
+		long helperNodes = 0;
+		for (int i = 0; i < helpers.length; i++)
+		{
+			try
+			{
+				helpers[i].join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			helperNodes += helperSearchers[i].nodes;
+		}
+		
+		firstMoveCutoffRate = searcher.getFirstMoveCutoffRate();
+		if (printStatistics)
+		{
+			System.err.println((pondering ? "Pondered to depth " : "Depth ") + currLevel + ", " + searcher.nodes + " nodes, " + searcher.tableHits
+					+ " table hits, " + searcher.cutoffs + " cutoffs, " + Math.round(firstMoveCutoffRate * 1000) / 10.0
+					+ "% on the first move" + (helpers.length > 0 ? ", " + helperNodes + " nodes in helper threads" : "")
+					+ ", " + timeManager.getElapsed() / 1000000 + " ms, branching factor "
+					+ Math.round(timeManager.getBranchingFactor() * 100) / 100.0);
+		}
+	}
+	
+	// Returns whether the passed state is lastRoot or follows from it, with us playing the same side, so that the
+	// scores in the table still hold.
+	private boolean isSameGame(final GameStateModule state)
+	{
+		if (lastRoot == null || lastPlayer != ourPlayer) return false;
+		if (lastRoot.getWidth() != state.getWidth() || lastRoot.getHeight() != state.getHeight()) return false;
+		if (lastRoot.getCoins() > state.getCoins()) return false;
+		for (int x = 0; x < state.getWidth(); x++)
+		{
+			if (lastRoot.getHeightAt(x) > state.getHeightAt(x)) return false;
+			for (int y = 0; y < lastRoot.getHeightAt(x); y++)
+			{
+				if (lastRoot.getAt(x, y) != state.getAt(x, y)) return false;
+			}
+		}
+		return true;
+	}
+	
+	// Iterative deepening over Young Brothers Wait searches of the passed state.
+	public void searchYoungBrothersWait(final GameStateModule state)
+	{
+		stopSearch = false;
+		int parallelism = Math.max(threads, 1);
+		if (pool == null || pool.getParallelism() != parallelism)
+		{
+			if (pool != null) pool.shutdown();
+			pool = new ForkJoinPool(parallelism);
+		}
 		
-		// Alpha/beta values. Used for alpha-beta pruning.
-		public int alpha;
-		public int beta;
+		// Fall back on the most promising move in case not even the first iteration completes.
+		Searcher searcher = new Searcher(state, null, null);
+		searcher.orderMoves(0, -1);
+		chosenMove = searcher.moves[0][0];
 		
-		// Generic constructor.
-		public TreeNode(GameStateModule _state, TreeNode _parent)
+		int currLevel = Math.min(4, maxDepth);
+		long nodes = 0;
+		while (true)
 		{
-			children = null;
-			state = _state;
-			parent = _parent;
-			v = 0;
-			vFrom = -99;
-			eval = 0;
-			max = false;
-			level = 0;
-			move = -99;
-			lowestLevel = 0;
+			// If we run out of time at any point, exit (the last chosen value will be used). Do not start an
+			// iteration that is not expected to finish in time, since it would be thrown away.
+			if (terminate || !timeManager.canStartIteration()) break;
+			timeManager.iterationStarted();
+			YbwcTask root = new YbwcTask(state.copy(), currLevel, -Integer.MAX_VALUE, Integer.MAX_VALUE, null, chosenMove);
+			pool.invoke(root);
+			nodes += root.nodes;
+			if (!root.valid || root.bestMove == -1) break;
+			timeManager.iterationFinished(root.bestMove, nodes);
+			chosenMove = root.bestMove;
+			chosenScore = root.join();
 			
-			alpha = Integer.MIN_VALUE;
-			beta = Integer.MAX_VALUE;
+			// If no line was cut off by the depth limit, then the whole game tree has been searched.
+			if (!root.hitDepthLimit) break;
+			if (currLevel >= maxDepth) break;
+			
+			currLevel++;
+		}
+		stopSearch = true;
+		
+		if (printStatistics)
+		{
+			System.err.println("Depth " + currLevel + ", " + nodes + " nodes, " + timeManager.getElapsed() / 1000000 + " ms");
 		}
 	}
 	
-	// Sets the next move to be made by the AI (by setting chosenMove).
-	@Override
-	public void getNextMove(final GameStateModule state)
+	// Iterative deepening by building a game tree of TreeNodes for each level.
+	public void searchTree(final GameStateModule state)
 	{
-		ourPlayer = state.getActivePlayer();
+		treeNodes = 0;
+		treeHalted = false;
+		treeNextPoll = 0;
 		TreeNode root;
 		
 		int currLevel = 4;
@@ -69,12 +1170,14 @@ public class alphabeta_MatthewMartin extends AIModule
 			root.level = 0;
 			
 			// If we run out of time at any point, exit (the last chosen value will be used).
-			if (terminate) break;
+			if (treeStopped() || !timeManager.canStartIteration()) break;
+			timeManager.iterationStarted();
 			expandToLevel(root, currLevel, Integer.MIN_VALUE, Integer.MAX_VALUE);
-			if (terminate) break;
+			if (treeStopped()) break;
 			int newMove = getMove(root);
-			if (terminate) break;
+			if (treeStopped()) break;
 			chosenMove = newMove;
+			timeManager.iterationFinished(newMove, treeNodes);
 			
 			// If attempted to expand n layers, but only expanded n-1 layers, then we have already expanded to the bottom.
 			// Break to avoid attempting to expand huge numbers of layers.
@@ -84,6 +1187,18 @@ public class alphabeta_MatthewMartin extends AIModule
 		}
 	}
 	
+	// Returns whether the tree search should stop. terminate and the clock are only read every POLL_INTERVAL
+	// nodes, and once one of them says to stop, the search stays stopped.
+	private boolean treeStopped()
+	{
+		if (!treeHalted && treeNodes >= treeNextPoll)
+		{
+			treeNextPoll = treeNodes + POLL_INTERVAL;
+			treeHalted = terminate || timeManager.isOutOfTime();
+		}
+		return treeHalted;
+	}
+	
 	// After expanding the tree, chooses the best known move based on their evaluation values.
 	public int getMove(TreeNode root)
 	{
@@ -92,9 +1207,9 @@ public class alphabeta_MatthewMartin extends AIModule
 		int currMove = -99;
 		int currEval = Integer.MIN_VALUE;
 		// For each possible connect four move.
-		for (int i = 0; i < 7; i++)
+		for (int i = 0; i < root.children.length; i++)
 		{
-			if (terminate) return -1;
+			if (treeStopped()) return -1;
 			if (root.children[i] == null) break;
 			
 			if (root.children[i].v == bestV)
@@ -112,7 +1227,8 @@ public class alphabeta_MatthewMartin extends AIModule
 	// Expands the node to the passed level, using alpha-beta pruning.
 	public void expandToLevel(TreeNode node, int level, int alpha, int beta)
 	{
-		if (terminate) return;
+		treeNodes++;
+		if (treeStopped()) return;
 		if (node.state.isGameOver() || node.level == level)
 		{
 			node.v = node.eval;
@@ -121,15 +1237,18 @@ public class alphabeta_MatthewMartin extends AIModule
 		
 		node.v = (node.max ? Integer.MIN_VALUE : Integer.MAX_VALUE);
 		node.children = getMovesEvalOrdered(node);
-		if (terminate) return;
-		for (int i = 0; i < 7; i++)
+		if (treeStopped()) return;
+		for (int i = 0; i < node.children.length; i++)
 		{
 			if (node.children[i] == null) break;
 			
 			expandToLevel(node.children[i], level, alpha, beta);
-			if (terminate) return;
+			if (treeStopped()) return;
 			
 			if (node.lowestLevel < node.children[i].lowestLevel) node.lowestLevel = node.children[i].lowestLevel;
+			// Only the values of the child are needed from here on, so let its subtree go. This keeps the tree
+			// down to the nodes on the current path and their siblings, however wide the board is.
+			node.children[i].children = null;
 			
 			if (node.max)
 			{
@@ -168,14 +1287,16 @@ public class alphabeta_MatthewMartin extends AIModule
 	public TreeNode[] getMovesUnordered(TreeNode node)
 	{
 		
-		TreeNode[] result = new TreeNode[7];
+		TreeNode[] result = new TreeNode[node.state.getWidth()];
 		TreeNode newNode;
 		GameStateModule newState;
 		int i = 0;
-		for (int x = 0; x < 7; x++)
+		int legal = node.state.getLegalMoves();
+		int width = node.state.getWidth();
+		for (int x = 0; x < width; x++)
 		{
-			if (terminate) return null;
-			if (node.state.canMakeMove(x))
+			if (treeStopped()) return null;
+			if ((legal & (1 << x)) != 0)
 			{
 				newState = node.state.copy();
 				newState.makeMove(x);
@@ -197,14 +1318,16 @@ public class alphabeta_MatthewMartin extends AIModule
 	public TreeNode[] getMovesEvalOrdered(TreeNode node)
 	{
 		
-		TreeNode[] result = new TreeNode[7];
+		TreeNode[] result = new TreeNode[node.state.getWidth()];
 		TreeNode newNode;
 		GameStateModule newState;
 		int i = 0;
-		for (int x = 0; x < 7; x++)
+		int legal = node.state.getLegalMoves();
+		int width = node.state.getWidth();
+		for (int x = 0; x < width; x++)
 		{
-			if (terminate) return null;
-			if (node.state.canMakeMove(x))
+			if (treeStopped()) return null;
+			if ((legal & (1 << x)) != 0)
 			{
 				newState = node.state.copy();
 				newState.makeMove(x);
@@ -227,7 +1350,7 @@ public class alphabeta_MatthewMartin extends AIModule
 	public void insertNodeIntoArray(TreeNode node, TreeNode[] ary)
 	{
 		TreeNode temp;
-		for (int i = 0; i < 7; i++)
+		for (int i = 0; i < ary.length; i++)
 		{
 			if (ary[i] == null)
 			{
@@ -258,7 +1381,8 @@ public class alphabeta_MatthewMartin extends AIModule
 		}
 	}
 	
-	// Returns the calculated evaluation value for the current board state.
+	// Returns the calculated evaluation value for the current board state: the weight of the ways to win that
+	// the opponent can no longer use minus the weight of those that we can no longer use (see LineTable).
 	private int eval(final GameStateModule state)
 	{
 		if (state.isGameOver())
@@ -277,584 +1401,31 @@ public class alphabeta_MatthewMartin extends AIModule
 			}
 		}
 		
-		boolean[] blockedMyWays = new boolean[69];
-		boolean[] blockedOpponentWays = new boolean[69];
-		int opponentPlayer = (ourPlayer == 1 ? 2 : 1);
-		
-		int myBlocked = 0;
-		int opponentBlocked = 0;
-		for (int x = 0; x < 7; x++)
+		if (state instanceof BitboardAccess)
 		{
-			for (int y = 0; y < state.getHeightAt(x); y++)
+			BitboardAccess bitboards = (BitboardAccess) state;
+			BitboardEvaluator evaluator = bitboardEvaluator;
+			if (evaluator == null || evaluator.width != state.getWidth() || evaluator.height != state.getHeight()
+					|| evaluator.bitsPerColumn != bitboards.getBitsPerColumn())
 			{
-				if (state.getAt(x, y) == ourPlayer)
-				{
-					opponentBlocked += waysToWinBlockXY(x, y, blockedOpponentWays);
-				}
-				else if (state.getAt(x, y) == opponentPlayer)
-				{
-					myBlocked += waysToWinBlockXY(x, y, blockedMyWays);
-				}
+				evaluator = BitboardEvaluator.get(state, bitboards);
+				bitboardEvaluator = evaluator;
 			}
+			return evaluator.evaluate(bitboards, ourPlayer);
 		}
-		int result = opponentBlocked - myBlocked;
-		
-		return result;
-	}
-	
-	// Returns the number of ways to win.
-	private int waysToWinBlockXY(int x, int y, boolean[] blockedWays)
-	{
-		int pos = y * 7 + x;
-		
-		int result = 0;
-		
-		final int horizontalMulti = 1;
-		final int verticalMulti = 1;
-		final int diagonalMulti = 1;
 		
-		// Large switch statement to optimize way-blocking lookup.
-		switch (pos)
+		// States without bitboards are counted line by line, by an evaluator that is only built once per thread.
+		IncrementalEvaluator evaluator = lineEvaluators.get();
+		if (evaluator == null || evaluator.width != state.getWidth() || evaluator.height != state.getHeight())
 		{
-			case 0:
-				result += horizontalMulti * waysToWinBlockWay(0, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(24, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(60, blockedWays);
-				return result;
-				
-			case 1:
-				result += horizontalMulti * waysToWinBlockWay(0, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(1, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(27, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				return result;
-				
-			case 2:
-				result += horizontalMulti * waysToWinBlockWay(0, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(1, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(2, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(30, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				return result;
-				
-			case 3:
-				result += horizontalMulti * waysToWinBlockWay(0, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(1, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(2, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(3, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(33, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(57, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(45, blockedWays);
-				return result;
-				
-			case 4:
-				result += horizontalMulti * waysToWinBlockWay(1, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(2, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(3, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(36, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(46, blockedWays);
-				return result;
-				
-			case 5:
-				result += horizontalMulti * waysToWinBlockWay(2, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(3, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(39, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(47, blockedWays);
-				return result;
-				
-			case 6:
-				result += horizontalMulti * waysToWinBlockWay(3, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(42, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(48, blockedWays);
-				return result;
-				
-			case 7:
-				result += horizontalMulti * waysToWinBlockWay(4, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(24, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(25, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(64, blockedWays);
-				return result;
-				
-			case 8:
-				result += horizontalMulti * waysToWinBlockWay(4, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(5, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(27, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(28, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(60, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(63, blockedWays);
-				return result;
-				
-			case 9:
-				result += horizontalMulti * waysToWinBlockWay(4, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(5, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(6, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(30, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(31, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(62, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(45, blockedWays);
-				return result;
-				
-			case 10:
-				result += horizontalMulti * waysToWinBlockWay(4, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(5, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(6, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(7, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(33, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(34, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(58, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(61, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(46, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(49, blockedWays);
-				return result;
-			
-			case 11:
-				result += horizontalMulti * waysToWinBlockWay(5, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(6, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(7, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(36, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(37, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(57, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(47, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(50, blockedWays);
-				return result;
-				
-			case 12:
-				result += horizontalMulti * waysToWinBlockWay(6, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(7, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(39, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(40, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(48, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(51, blockedWays);
-				return result;
-			
-			case 13:
-				result += horizontalMulti * waysToWinBlockWay(7, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(42, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(43, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(52, blockedWays);
-				return result;
-				
-			case 14:
-				result += horizontalMulti * waysToWinBlockWay(8, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(24, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(25, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(26, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(68, blockedWays);
-				return result;
-				
-			case 15:
-				result += horizontalMulti * waysToWinBlockWay(8, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(9, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(27, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(28, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(29, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(64, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(67, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(45, blockedWays);
-				return result;
-				
-			case 16:
-				result += horizontalMulti * waysToWinBlockWay(8, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(9, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(10, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(30, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(31, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(32, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(60, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(63, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(66, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(46, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(49, blockedWays);
-				return result;
-				
-			case 17:
-				result += horizontalMulti * waysToWinBlockWay(8, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(9, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(10, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(11, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(33, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(34, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(35, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(62, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(65, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(47, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(50, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(53, blockedWays);
-				return result;
-				
-			case 18:
-				result += horizontalMulti * waysToWinBlockWay(9, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(10, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(11, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(36, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(37, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(38, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(58, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(61, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(48, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(51, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(54, blockedWays);
-				return result;
-				
-			case 19:
-				result += horizontalMulti * waysToWinBlockWay(10, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(11, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(39, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(40, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(41, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(57, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(52, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(55, blockedWays);
-				return result;
-				
-			case 20:
-				result += horizontalMulti * waysToWinBlockWay(11, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(42, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(43, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(44, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(56, blockedWays);
-				return result;
-				
-			case 21:
-				result += horizontalMulti * waysToWinBlockWay(12, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(24, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(25, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(26, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(45, blockedWays);
-				return result;
-				
-			case 22:
-				result += horizontalMulti * waysToWinBlockWay(12, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(13, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(27, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(28, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(29, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(68, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(46, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(49, blockedWays);
-				return result;
-				
-			case 23:
-				result += horizontalMulti * waysToWinBlockWay(12, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(13, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(14, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(30, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(31, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(32, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(64, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(67, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(47, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(50, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(53, blockedWays);
-				return result;
-				
-			case 24:
-				result += horizontalMulti * waysToWinBlockWay(12, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(13, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(14, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(15, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(33, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(34, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(35, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(60, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(63, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(66, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(48, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(51, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(54, blockedWays);
-				return result;
-				
-			case 25:
-				result += horizontalMulti * waysToWinBlockWay(13, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(14, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(15, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(36, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(37, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(38, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(62, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(65, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(52, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(55, blockedWays);
-				return result;
-				
-			case 26:
-				result += horizontalMulti * waysToWinBlockWay(14, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(15, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(39, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(40, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(41, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(58, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(61, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(56, blockedWays);
-				return result;
-				
-			case 27:
-				result += horizontalMulti * waysToWinBlockWay(15, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(42, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(43, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(44, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(57, blockedWays);
-				return result;
-				
-			case 28:
-				result += horizontalMulti * waysToWinBlockWay(16, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(25, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(26, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(49, blockedWays);
-				return result;
-				
-			case 29:
-				result += horizontalMulti * waysToWinBlockWay(16, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(17, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(28, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(29, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(50, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(53, blockedWays);
-				return result;
-				
-			case 30:
-				result += horizontalMulti * waysToWinBlockWay(16, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(17, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(18, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(31, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(32, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(68, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(51, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(54, blockedWays);
-				return result;
-				
-			case 31:
-				result += horizontalMulti * waysToWinBlockWay(16, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(17, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(18, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(19, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(34, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(35, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(64, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(67, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(52, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(55, blockedWays);
-				return result;
-				
-			case 32:
-				result += horizontalMulti * waysToWinBlockWay(17, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(18, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(19, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(37, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(38, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(63, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(66, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(56, blockedWays);
-				return result;
-				
-			case 33:
-				result += horizontalMulti * waysToWinBlockWay(18, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(19, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(40, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(41, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(62, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(65, blockedWays);
-				return result;
-				
-			case 34:
-				result += horizontalMulti * waysToWinBlockWay(19, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(43, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(44, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(61, blockedWays);
-				return result;
-				
-			case 35:
-				result += horizontalMulti * waysToWinBlockWay(20, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(26, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(53, blockedWays);
-				return result;
-				
-			case 36:
-				result += horizontalMulti * waysToWinBlockWay(20, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(21, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(29, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(54, blockedWays);
-				return result;
-				
-			case 37:
-				result += horizontalMulti * waysToWinBlockWay(20, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(21, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(22, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(32, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(55, blockedWays);
-				return result;
-				
-			case 38:
-				result += horizontalMulti * waysToWinBlockWay(20, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(21, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(22, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(23, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(35, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(68, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(56, blockedWays);
-				return result;
-				
-			case 39:
-				result += horizontalMulti * waysToWinBlockWay(21, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(22, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(23, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(38, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(67, blockedWays);
-				return result;
-				
-			case 40:
-				result += horizontalMulti * waysToWinBlockWay(22, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(23, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(41, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(66, blockedWays);
-				return result;
-				
-			case 41:
-				result += horizontalMulti * waysToWinBlockWay(23, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(44, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(65, blockedWays);
-				return result;
-		}
-		return -1;
-	}
-	
-	// Updates the blockedWays array.
-	private int waysToWinBlockWay(int wayNum, boolean[] blockedWays)
-	{
-		if (blockedWays[wayNum] == false)
-		{ // Block the way.
-			blockedWays[wayNum] = true;
-			if (wayNum == 4 || wayNum == 5 || wayNum == 6 || wayNum == 7 ||
-				wayNum == 46 || wayNum == 49 || wayNum == 58 || wayNum == 61)
-			{ // Passing through row 1.
-				return 4;
-			}
-			else if (wayNum == 8 || wayNum == 9 || wayNum == 10 || wayNum == 11 ||
-				wayNum == 47 || wayNum == 50 || wayNum == 53 ||
-				wayNum == 59 || wayNum == 62 || wayNum == 65)
-			{ // Passing through row 2.
-				return 3;
-			}
-			else if (wayNum == 12 || wayNum == 13 || wayNum == 14 || wayNum == 15 ||
-				wayNum == 48 || wayNum == 51 || wayNum == 54 ||
-				wayNum == 60 || wayNum == 63 || wayNum == 66)
-			{ // Passing through row 3.
-				return 2;
-			}
-			else
-			{
-				return 1;
-			}
+			evaluator = new IncrementalEvaluator(state);
+			lineEvaluators.set(evaluator);
 		}
 		else
-		{ // The way was already blocked.
-			return 0;
+		{
+			evaluator.reset(state);
 		}
+		return evaluator.evaluate(ourPlayer);
 	}
 	
 	// Displays the passed board state.
@@ -872,7 +1443,7 @@ public class alphabeta_MatthewMartin extends AIModule
 		
 		if (node.children != null)
 		{
-			for (int i = 0; i < 7; i++)
+			for (int i = 0; i < node.children.length; i++)
 			{
 				if (node.children[i] != null)
 				{
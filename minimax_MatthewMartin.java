@@ -5,6 +5,32 @@ public class minimax_MatthewMartin extends AIModule
 {
 	// The player we are playing as (1 or 2).
 	private int ourPlayer;
+	// Evaluates positions of states with bitboards, for the board size of the last one evaluated.
+	private BitboardEvaluator bitboardEvaluator;
+	// Counts the lines of states without bitboards, reset for each state.
+	private IncrementalEvaluator lineEvaluator;
+	
+	// True to remember the values of fully expanded nodes in a transposition table, which is kept from one move
+	// to the next within a game. Values are from our point of view, so they hold wherever a position comes up.
+	public boolean useTranspositionTable = true;
+	// Base 2 logarithm of the number of transposition table slots (16 bytes each).
+	public int transpositionTableBits = 20;
+	
+	// The transposition table, created on first use, aged before every search and emptied for a new game.
+	private TranspositionTable table;
+	// The state and player of the last search, to tell whether a search is in the same game.
+	private GameStateModule lastRoot;
+	private int lastPlayer;
+	
+	// Decides which iterations there is time for, from timeLimit.
+	private final TimeManager timeManager = new TimeManager();
+	// The search only reads terminate and the clock once every this many nodes.
+	private static final int POLL_INTERVAL = 1024;
+	// The number of nodes expanded by the current search.
+	private long nodes;
+	// Set once terminate or the clock said to stop, and the node count at which to look again.
+	private boolean halted;
+	private long nextPoll;
 	
 	public class TreeNode
 	{
@@ -51,6 +77,20 @@ public class minimax_MatthewMartin extends AIModule
 	public void getNextMove(final GameStateModule state)
 	{
 		ourPlayer = state.getActivePlayer();
+		timeManager.start(timeLimit);
+		nodes = 0;
+		halted = false;
+		nextPoll = 0;
+		
+		// With a single legal move there is nothing to think about.
+		int legal = state.getLegalMoves();
+		if (Integer.bitCount(legal) == 1)
+		{
+			chosenMove = Integer.numberOfTrailingZeros(legal);
+			return;
+		}
+		
+		prepareTable(state);
 		TreeNode root;
 		
 		int currLevel = 4;
@@ -62,13 +102,19 @@ public class minimax_MatthewMartin extends AIModule
 			root.max = true;
 			root.level = 0;
 			
-			// If we run out of time at any point, exit (the last chosen value will be used).
-			if (terminate) break;
+			// If we run out of time at any point, exit (the last chosen value will be used). Do not start an
+			// iteration that is not expected to finish in time, since it would be thrown away.
+			if (stopped() || !timeManager.canStartIteration()) break;
+			timeManager.iterationStarted();
 			expandToLevel(root, currLevel);
-			if (terminate) break;
+			if (stopped()) break;
 			int newMove = getMove(root);
-			if (terminate) break;
+			if (stopped()) break;
 			chosenMove = newMove;
+			timeManager.iterationFinished(newMove, nodes);
+			
+			// A win or loss found by the search will not change with depth.
+			if (Math.abs((long) root.v) >= Integer.MAX_VALUE - state.getWidth() * state.getHeight()) break;
 			
 			// If attempted to expand n layers, but only expanded n-1 layers, then we have already expanded to the bottom.
 			// Break to avoid attempting to expand huge numbers of layers.
@@ -86,9 +132,9 @@ public class minimax_MatthewMartin extends AIModule
 		int currMove = -99;
 		int currEval = Integer.MIN_VALUE;
 		// For each possible connect four move.
-		for (int i = 0; i < 7; i++)
+		for (int i = 0; i < root.children.length; i++)
 		{
-			if (terminate) return -1;
+			if (stopped()) return -1;
 			if (root.children[i] == null) break;
 			
 			if (root.children[i].v == bestV)
@@ -106,24 +152,47 @@ public class minimax_MatthewMartin extends AIModule
 	// Expands the node to the passed level, using minimax.
 	public void expandToLevel(TreeNode node, int level)
 	{
-		if (terminate) return;
+		nodes++;
+		if (stopped()) return;
 		if (node.state.isGameOver() || node.level == level)
 		{
 			node.v = node.eval = eval(node.state);
 			return;
 		}
 		
+		// Below the root, a node searched at least as deep before needs no children. An entry that did not reach
+		// the end of the game on every line counts as reaching the level.
+		long key = 0;
+		if (table != null)
+		{
+			key = node.state.getPositionKey();
+			if (node.level > 0)
+			{
+				long entry = table.probe(key);
+				int entryDepth = TranspositionTable.getDepth(entry);
+				if (TranspositionTable.getBound(entry) == TranspositionTable.EXACT && entryDepth >= level - node.level)
+				{
+					node.v = TranspositionTable.getScore(entry);
+					if (entryDepth != TranspositionTable.SOLVED) node.lowestLevel = level;
+					return;
+				}
+			}
+		}
+		
 		node.v = (node.max ? Integer.MIN_VALUE : Integer.MAX_VALUE);
 		node.children = getMovesUnordered(node);
-		if (terminate) return;
-		for (int i = 0; i < 7; i++)
+		if (stopped()) return;
+		for (int i = 0; i < node.children.length; i++)
 		{
 			if (node.children[i] == null) break;
 			
 			expandToLevel(node.children[i], level);
-			if (terminate) return;
+			if (stopped()) return;
 			
 			if (node.lowestLevel < node.children[i].lowestLevel) node.lowestLevel = node.children[i].lowestLevel;
+			// Only the values of the child are needed from here on, so let its subtree go. This keeps the tree
+			// down to the nodes on the current path and their siblings, however wide the board is.
+			node.children[i].children = null;
 			
 			if (node.max)
 			{
@@ -140,20 +209,84 @@ public class minimax_MatthewMartin extends AIModule
 				}
 			}
 		}
+		
+		// Only fully expanded nodes get here, so v is exact. A subtree whose every line ended the game is solved.
+		if (table != null)
+		{
+			table.store(key, node.lowestLevel < level ? TranspositionTable.SOLVED : level - node.level,
+					TranspositionTable.EXACT, node.v, -1);
+		}
+	}
+	
+	// Returns whether the search should stop. terminate and the clock are only read every POLL_INTERVAL nodes,
+	// and once one of them says to stop, the search stays stopped.
+	private boolean stopped()
+	{
+		if (!halted && nodes >= nextPoll)
+		{
+			nextPoll = nodes + POLL_INTERVAL;
+			halted = terminate || timeManager.isOutOfTime();
+		}
+		return halted;
+	}
+	
+	// Makes the transposition table ready for a search of the passed state: keeps and ages it within a game,
+	// and empties it for a new one.
+	private void prepareTable(final GameStateModule state)
+	{
+		if (!useTranspositionTable)
+		{
+			table = null;
+			return;
+		}
+		if (table == null || table.getSize() != 1 << transpositionTableBits)
+		{
+			table = new TranspositionTable(transpositionTableBits);
+		}
+		else if (!isSameGame(state))
+		{
+			table.clear();
+		}
+		else
+		{
+			table.newSearch();
+		}
+		lastRoot = state.copy();
+		lastPlayer = ourPlayer;
+	}
+	
+	// Returns whether the passed state is lastRoot or follows from it, with us playing the same side, so that the
+	// values in the table still hold.
+	private boolean isSameGame(final GameStateModule state)
+	{
+		if (lastRoot == null || lastPlayer != ourPlayer) return false;
+		if (lastRoot.getWidth() != state.getWidth() || lastRoot.getHeight() != state.getHeight()) return false;
+		if (lastRoot.getCoins() > state.getCoins()) return false;
+		for (int x = 0; x < state.getWidth(); x++)
+		{
+			if (lastRoot.getHeightAt(x) > state.getHeightAt(x)) return false;
+			for (int y = 0; y < lastRoot.getHeightAt(x); y++)
+			{
+				if (lastRoot.getAt(x, y) != state.getAt(x, y)) return false;
+			}
+		}
+		return true;
 	}
 	
 	// Returns an array of possible nodes that can be arrived at from the passed node, sorted by eval function.
 	public TreeNode[] getMovesUnordered(TreeNode node)
 	{
 		
-		TreeNode[] result = new TreeNode[7];
+		TreeNode[] result = new TreeNode[node.state.getWidth()];
 		TreeNode newNode;
 		GameStateModule newState;
 		int i = 0;
-		for (int x = 0; x < 7; x++)
+		int legal = node.state.getLegalMoves();
+		int width = node.state.getWidth();
+		for (int x = 0; x < width; x++)
 		{
-			if (terminate) return null;
-			if (node.state.canMakeMove(x))
+			if (stopped()) return null;
+			if ((legal & (1 << x)) != 0)
 			{
 				newState = node.state.copy();
 				newState.makeMove(x);
@@ -171,7 +304,8 @@ public class minimax_MatthewMartin extends AIModule
 		return result;
 	}
 	
-	// Returns the calculated evaluation value for the current board state.
+	// Returns the calculated evaluation value for the current board state: the weight of the ways to win that
+	// the opponent can no longer use minus the weight of those that we can no longer use (see LineTable).
 	private int eval(final GameStateModule state)
 	{
 		if (state.isGameOver())
@@ -190,584 +324,29 @@ public class minimax_MatthewMartin extends AIModule
 			}
 		}
 		
-		boolean[] blockedMyWays = new boolean[69];
-		boolean[] blockedOpponentWays = new boolean[69];
-		int opponentPlayer = (ourPlayer == 1 ? 2 : 1);
-		
-		int myBlocked = 0;
-		int opponentBlocked = 0;
-		for (int x = 0; x < 7; x++)
+		if (state instanceof BitboardAccess)
 		{
-			for (int y = 0; y < state.getHeightAt(x); y++)
+			BitboardAccess bitboards = (BitboardAccess) state;
+			BitboardEvaluator evaluator = bitboardEvaluator;
+			if (evaluator == null || evaluator.width != state.getWidth() || evaluator.height != state.getHeight()
+					|| evaluator.bitsPerColumn != bitboards.getBitsPerColumn())
 			{
-				if (state.getAt(x, y) == ourPlayer)
-				{
-					opponentBlocked += waysToWinBlockXY(x, y, state, blockedOpponentWays);
-				}
-				else if (state.getAt(x, y) == opponentPlayer)
-				{
-					myBlocked += waysToWinBlockXY(x, y, state, blockedMyWays);
-				}
+				evaluator = BitboardEvaluator.get(state, bitboards);
+				bitboardEvaluator = evaluator;
 			}
+			return evaluator.evaluate(bitboards, ourPlayer);
 		}
-		int result = opponentBlocked - myBlocked;
 		
-		return result;
-	}
-	
-	// Returns the number of ways to win.
-	private int waysToWinBlockXY(int x, int y, final GameStateModule state, boolean[] blockedWays)
-	{
-		int pos = y * 7 + x;
-		
-		int result = 0;
-		
-		final int horizontalMulti = 1;
-		final int verticalMulti = 1;
-		final int diagonalMulti = 1;
-		
-		// Large switch statement to optimize way-blocking lookup.
-		switch (pos)
+		// States without bitboards are counted line by line, by an evaluator that is only built once per board size.
+		if (lineEvaluator == null || lineEvaluator.width != state.getWidth() || lineEvaluator.height != state.getHeight())
 		{
-			case 0:
-				result += horizontalMulti * waysToWinBlockWay(0, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(24, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(60, blockedWays);
-				return result;
-				
-			case 1:
-				result += horizontalMulti * waysToWinBlockWay(0, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(1, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(27, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				return result;
-				
-			case 2:
-				result += horizontalMulti * waysToWinBlockWay(0, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(1, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(2, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(30, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				return result;
-				
-			case 3:
-				result += horizontalMulti * waysToWinBlockWay(0, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(1, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(2, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(3, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(33, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(57, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(45, blockedWays);
-				return result;
-				
-			case 4:
-				result += horizontalMulti * waysToWinBlockWay(1, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(2, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(3, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(36, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(46, blockedWays);
-				return result;
-				
-			case 5:
-				result += horizontalMulti * waysToWinBlockWay(2, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(3, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(39, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(47, blockedWays);
-				return result;
-				
-			case 6:
-				result += horizontalMulti * waysToWinBlockWay(3, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(42, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(48, blockedWays);
-				return result;
-				
-			case 7:
-				result += horizontalMulti * waysToWinBlockWay(4, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(24, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(25, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(64, blockedWays);
-				return result;
-				
-			case 8:
-				result += horizontalMulti * waysToWinBlockWay(4, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(5, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(27, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(28, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(60, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(63, blockedWays);
-				return result;
-				
-			case 9:
-				result += horizontalMulti * waysToWinBlockWay(4, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(5, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(6, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(30, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(31, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(62, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(45, blockedWays);
-				return result;
-				
-			case 10:
-				result += horizontalMulti * waysToWinBlockWay(4, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(5, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(6, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(7, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(33, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(34, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(58, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(61, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(46, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(49, blockedWays);
-				return result;
-			
-			case 11:
-				result += horizontalMulti * waysToWinBlockWay(5, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(6, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(7, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(36, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(37, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(57, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(47, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(50, blockedWays);
-				return result;
-				
-			case 12:
-				result += horizontalMulti * waysToWinBlockWay(6, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(7, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(39, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(40, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(48, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(51, blockedWays);
-				return result;
-			
-			case 13:
-				result += horizontalMulti * waysToWinBlockWay(7, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(42, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(43, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(52, blockedWays);
-				return result;
-				
-			case 14:
-				result += horizontalMulti * waysToWinBlockWay(8, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(24, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(25, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(26, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(68, blockedWays);
-				return result;
-				
-			case 15:
-				result += horizontalMulti * waysToWinBlockWay(8, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(9, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(27, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(28, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(29, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(64, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(67, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(45, blockedWays);
-				return result;
-				
-			case 16:
-				result += horizontalMulti * waysToWinBlockWay(8, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(9, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(10, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(30, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(31, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(32, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(60, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(63, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(66, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(46, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(49, blockedWays);
-				return result;
-				
-			case 17:
-				result += horizontalMulti * waysToWinBlockWay(8, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(9, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(10, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(11, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(33, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(34, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(35, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(62, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(65, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(47, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(50, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(53, blockedWays);
-				return result;
-				
-			case 18:
-				result += horizontalMulti * waysToWinBlockWay(9, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(10, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(11, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(36, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(37, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(38, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(58, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(61, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(48, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(51, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(54, blockedWays);
-				return result;
-				
-			case 19:
-				result += horizontalMulti * waysToWinBlockWay(10, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(11, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(39, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(40, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(41, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(57, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(52, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(55, blockedWays);
-				return result;
-				
-			case 20:
-				result += horizontalMulti * waysToWinBlockWay(11, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(42, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(43, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(44, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(56, blockedWays);
-				return result;
-				
-			case 21:
-				result += horizontalMulti * waysToWinBlockWay(12, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(24, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(25, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(26, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(45, blockedWays);
-				return result;
-				
-			case 22:
-				result += horizontalMulti * waysToWinBlockWay(12, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(13, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(27, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(28, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(29, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(68, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(46, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(49, blockedWays);
-				return result;
-				
-			case 23:
-				result += horizontalMulti * waysToWinBlockWay(12, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(13, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(14, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(30, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(31, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(32, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(64, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(67, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(47, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(50, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(53, blockedWays);
-				return result;
-				
-			case 24:
-				result += horizontalMulti * waysToWinBlockWay(12, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(13, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(14, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(15, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(33, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(34, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(35, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(60, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(63, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(66, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(48, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(51, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(54, blockedWays);
-				return result;
-				
-			case 25:
-				result += horizontalMulti * waysToWinBlockWay(13, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(14, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(15, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(36, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(37, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(38, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(59, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(62, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(65, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(52, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(55, blockedWays);
-				return result;
-				
-			case 26:
-				result += horizontalMulti * waysToWinBlockWay(14, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(15, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(39, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(40, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(41, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(58, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(61, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(56, blockedWays);
-				return result;
-				
-			case 27:
-				result += horizontalMulti * waysToWinBlockWay(15, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(42, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(43, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(44, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(57, blockedWays);
-				return result;
-				
-			case 28:
-				result += horizontalMulti * waysToWinBlockWay(16, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(25, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(26, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(49, blockedWays);
-				return result;
-				
-			case 29:
-				result += horizontalMulti * waysToWinBlockWay(16, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(17, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(28, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(29, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(50, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(53, blockedWays);
-				return result;
-				
-			case 30:
-				result += horizontalMulti * waysToWinBlockWay(16, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(17, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(18, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(31, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(32, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(68, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(51, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(54, blockedWays);
-				return result;
-				
-			case 31:
-				result += horizontalMulti * waysToWinBlockWay(16, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(17, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(18, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(19, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(34, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(35, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(64, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(67, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(52, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(55, blockedWays);
-				return result;
-				
-			case 32:
-				result += horizontalMulti * waysToWinBlockWay(17, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(18, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(19, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(37, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(38, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(63, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(66, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(56, blockedWays);
-				return result;
-				
-			case 33:
-				result += horizontalMulti * waysToWinBlockWay(18, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(19, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(40, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(41, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(62, blockedWays);
-				result += diagonalMulti * waysToWinBlockWay(65, blockedWays);
-				return result;
-				
-			case 34:
-				result += horizontalMulti * waysToWinBlockWay(19, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(43, blockedWays);
-				result += verticalMulti * waysToWinBlockWay(44, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(61, blockedWays);
-				return result;
-				
-			case 35:
-				result += horizontalMulti * waysToWinBlockWay(20, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(26, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(53, blockedWays);
-				return result;
-				
-			case 36:
-				result += horizontalMulti * waysToWinBlockWay(20, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(21, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(29, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(54, blockedWays);
-				return result;
-				
-			case 37:
-				result += horizontalMulti * waysToWinBlockWay(20, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(21, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(22, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(32, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(55, blockedWays);
-				return result;
-				
-			case 38:
-				result += horizontalMulti * waysToWinBlockWay(20, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(21, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(22, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(23, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(35, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(68, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(56, blockedWays);
-				return result;
-				
-			case 39:
-				result += horizontalMulti * waysToWinBlockWay(21, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(22, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(23, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(38, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(67, blockedWays);
-				return result;
-				
-			case 40:
-				result += horizontalMulti * waysToWinBlockWay(22, blockedWays);
-				result += horizontalMulti * waysToWinBlockWay(23, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(41, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(66, blockedWays);
-				return result;
-				
-			case 41:
-				result += horizontalMulti * waysToWinBlockWay(23, blockedWays);
-				
-				result += verticalMulti * waysToWinBlockWay(44, blockedWays);
-				
-				result += diagonalMulti * waysToWinBlockWay(65, blockedWays);
-				return result;
-		}
-		return -1;
-	}
-	
-	// Updates the blockedWays array.
-	private int waysToWinBlockWay(int wayNum, boolean[] blockedWays)
-	{
-		if (blockedWays[wayNum] == false)
-		{ // Block the way.
-			blockedWays[wayNum] = true;
-			if (wayNum == 4 || wayNum == 5 || wayNum == 6 || wayNum == 7 ||
-				wayNum == 46 || wayNum == 49 || wayNum == 58 || wayNum == 61)
-			{ // Passing through row 1.
-				return 4;
-			}
-			else if (wayNum == 8 || wayNum == 9 || wayNum == 10 || wayNum == 11 ||
-				wayNum == 47 || wayNum == 50 || wayNum == 53 ||
-				wayNum == 59 || wayNum == 62 || wayNum == 65)
-			{ // Passing through row 2.
-				return 3;
-			}
-			else if (wayNum == 12 || wayNum == 13 || wayNum == 14 || wayNum == 15 ||
-				wayNum == 48 || wayNum == 51 || wayNum == 54 ||
-				wayNum == 60 || wayNum == 63 || wayNum == 66)
-			{ // Passing through row 3.
-				return 2;
-			}
-			else
-			{
-				return 1;
-			}
+			lineEvaluator = new IncrementalEvaluator(state);
 		}
 		else
-		{ // The way was already blocked.
-			return 0;
+		{
+			lineEvaluator.reset(state);
 		}
+		return lineEvaluator.evaluate(ourPlayer);
 	}
 	
 	// Displays the passed board state.
@@ -785,7 +364,7 @@ public class minimax_MatthewMartin extends AIModule
 		
 		if (node.children != null)
 		{
-			for (int i = 0; i < 7; i++)
+			for (int i = 0; i < node.children.length; i++)
 			{
 				if (node.children[i] != null)
 				{